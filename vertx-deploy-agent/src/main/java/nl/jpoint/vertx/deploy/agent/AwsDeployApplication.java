@@ -3,10 +3,18 @@ package nl.jpoint.vertx.deploy.agent;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
+import nl.jpoint.vertx.deploy.agent.command.DeployVerticle;
 import nl.jpoint.vertx.deploy.agent.handler.*;
 import nl.jpoint.vertx.deploy.agent.service.*;
+import nl.jpoint.vertx.deploy.agent.util.ArtifactCache;
+import nl.jpoint.vertx.deploy.agent.util.LaunchMode;
+import nl.jpoint.vertx.deploy.agent.util.ModuleRegistry;
+import nl.jpoint.vertx.deploy.agent.util.HttpUtils;
 import nl.jpoint.vertx.deploy.agent.util.LogConstants;
+import nl.jpoint.vertx.deploy.agent.util.RepositoryHttpClient;
+import nl.jpoint.vertx.deploy.agent.util.WorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -16,6 +24,9 @@ public class AwsDeployApplication extends AbstractVerticle {
     private static final Logger LOG = LoggerFactory.getLogger(AwsDeployApplication.class);
 
     private boolean initiated = false;
+    private RepositoryHttpClient httpClient;
+    private ModuleRegistry moduleRegistry;
+    private WorkerPool workerPool;
 
     @Override
     public void start() {
@@ -25,20 +36,29 @@ public class AwsDeployApplication extends AbstractVerticle {
             LOG.error("Unable to read config file");
             throw new IllegalStateException("Unable to read config file");
         }
-        final DeployApplicationService deployApplicationService = new DeployApplicationService(deployconfig, getVertx());
-        final DeployArtifactService deployArtifactService = new DeployArtifactService(getVertx(), deployconfig);
-        final DeployConfigService deployConfigService = new DeployConfigService(getVertx(), deployconfig);
+        this.httpClient = new RepositoryHttpClient(getVertx(), deployconfig);
+        final ArtifactCache artifactCache = new ArtifactCache(deployconfig, httpClient);
+        this.workerPool = new WorkerPool(getVertx(), deployconfig);
+        this.moduleRegistry = new ModuleRegistry(getVertx(), deployconfig, workerPool);
+        if (deployconfig.getApplicationLaunchMode() == LaunchMode.EMBEDDED) {
+            DeployVerticle.registerMavenFactory(getVertx(), deployconfig);
+        }
+        final DeployApplicationService deployApplicationService = new DeployApplicationService(deployconfig, getVertx(), artifactCache, moduleRegistry, workerPool);
+        final DeployArtifactService deployArtifactService = new DeployArtifactService(getVertx(), deployconfig, artifactCache, workerPool);
+        final DeployConfigService deployConfigService = new DeployConfigService(getVertx(), deployconfig, artifactCache, workerPool);
         final DefaultDeployService defaultDeployService = new DefaultDeployService(deployApplicationService, deployArtifactService, deployConfigService);
 
         this.createRunDir(deployconfig);
 
+        workerPool.start();
         deployApplicationService.cleanup().subscribe();
+        moduleRegistry.start();
         AwsService awsService = null;
         AutoDiscoverDeployService autoDiscoverDeployService = null;
 
         if (deployconfig.isAwsEnabled()) {
             awsService = new AwsService(getVertx(), deployconfig);
-            autoDiscoverDeployService = new AutoDiscoverDeployService(deployconfig, defaultDeployService, getVertx());
+            autoDiscoverDeployService = new AutoDiscoverDeployService(deployconfig, defaultDeployService, getVertx(), workerPool);
         }
 
         Router router = Router.router(getVertx());
@@ -46,11 +66,17 @@ public class AwsDeployApplication extends AbstractVerticle {
         router.post("/deploy/module*").handler(new RestDeployModuleHandler(deployApplicationService));
         router.post("/deploy/artifact*").handler(new RestDeployArtifactHandler(deployArtifactService));
         router.get("/deploy/update*").handler(new StatusUpdateHandler(deployApplicationService));
+        router.get("/deploy/drained*").handler(new DrainedHandler(deployApplicationService));
 
         if (deployconfig.isAwsEnabled()) {
             router.get("/deploy/status/:id").handler(new RestDeployStatusHandler(awsService, deployApplicationService));
         }
 
+        router.get("/deploy/metrics").handler(event -> HttpUtils.respondOk(event.request(), new JsonObject()
+                .put("http", httpClient.getPoolStats())
+                .put("worker", workerPool.getStats())
+                .put("modules", moduleRegistry.getProcessInfo())));
+
         router.get("/status").handler(event -> {
             if (initiated) {
                 event.response().setStatusCode(HttpResponseStatus.FORBIDDEN.code());
@@ -68,7 +94,7 @@ public class AwsDeployApplication extends AbstractVerticle {
         LOG.info("{}: Instantiated module.", LogConstants.CLUSTER_MANAGER);
 
         if (deployconfig.isAwsEnabled() && deployconfig.isAwsAutoDiscover() && autoDiscoverDeployService != null) {
-            autoDiscoverDeployService.autoDiscoverFirstDeploy();
+            autoDiscoverDeployService.autoDiscoverFirstDeploy().subscribe();
         }
     }
 
@@ -82,5 +108,14 @@ public class AwsDeployApplication extends AbstractVerticle {
     @Override
     public void stop() {
         LOG.warn("Stopping deploy application");
+        if (moduleRegistry != null) {
+            moduleRegistry.stop();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        if (workerPool != null) {
+            workerPool.stop();
+        }
     }
 }
@@ -1,6 +1,8 @@
 package nl.jpoint.vertx.deploy.agent;
 
 import io.vertx.core.json.JsonObject;
+import nl.jpoint.vertx.deploy.agent.util.ExtractMode;
+import nl.jpoint.vertx.deploy.agent.util.LaunchMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +21,19 @@ public class DeployConfig {
     private static final String VERTX_HOME = "vertx.home";
     private static final String RUN_DIR = "vertx.run";
     private static final String ARTIFACT_REPO = "artifact.storage";
+    private static final String ARTIFACT_DOWNLOAD_PARALLELISM = "artifact.download.parallelism";
+    private static final String ARTIFACT_CACHE_MAX_SIZE = "artifact.cache.max.size";
+    private static final String ARTIFACT_EXTRACT_MODE = "artifact.extract.mode";
+    private static final String ARTIFACT_EXTRACT_KEEP = "artifact.extract.keep";
+    private static final String ARTIFACT_EXTRACT_PARALLELISM = "artifact.extract.parallelism";
+    private static final String MODULE_RECONCILE_INTERVAL = "module.reconcile.interval";
+    private static final String APPLICATION_PARALLELISM = "application.parallelism";
+    private static final String APPLICATION_LAUNCH_MODE = "application.launch.mode";
+    private static final String APPLICATION_CDS = "application.cds";
+    private static final String APPLICATION_READY_TIMEOUT = "application.ready.timeout";
+    private static final String APPLICATION_DRAIN_TIMEOUT = "application.drain.timeout";
+    private static final String WORKER_POOL_SIZE = "worker.pool.size";
+    private static final String WORKER_MAX_EXECUTE_TIME = "worker.max.execute.time";
     private static final String AWS_ENABLED = "aws.enable";
     private static final String AWS_REGION = "aws.region";
     private static final String AWS_DEFAULT_REGION = "eu-west-1";
@@ -30,6 +45,10 @@ public class DeployConfig {
     private static final String HTTP_AUTH_PASS = "http.authPass";
     private static final String MAVEN_REPO_URI = "maven.repo.uri";
     private static final String MAVEN_SNAPSHOT_POLICY = "maven.repo.snapshot.policy";
+    private static final String MAVEN_REPO_MAX_CONNECTIONS = "maven.repo.max.connections";
+    private static final String MAVEN_REPO_CONNECT_TIMEOUT = "maven.repo.connect.timeout";
+    private static final String MAVEN_REPO_READ_TIMEOUT = "maven.repo.read.timeout";
+    private static final String MAVEN_METADATA_TTL = "maven.repo.metadata.ttl";
     private static final String CLUSTER = "vertx.clustering";
     private static final String DEFAULT_JAVA_OPTS = "vertx.default.java.opts";
     private static final String AWS_AS_AUTODISCOVER = "aws.as.autodiscover";
@@ -66,6 +85,23 @@ public class DeployConfig {
     private boolean awsAutoDiscover = false;
     private String serviceConfigLocation;
     private long pollInterval;
+    private int mavenRepoMaxConnections;
+    private int artifactDownloadParallelism;
+    private long artifactCacheMaxSize;
+    private ExtractMode artifactExtractMode;
+    private int artifactExtractKeep;
+    private int artifactExtractParallelism;
+    private long moduleReconcileInterval;
+    private int applicationParallelism;
+    private LaunchMode applicationLaunchMode;
+    private boolean applicationCds;
+    private long applicationReadyTimeout;
+    private long applicationDrainTimeout;
+    private int workerPoolSize;
+    private long workerMaxExecuteTime;
+    private int mavenRepoConnectTimeout;
+    private int mavenRepoReadTimeout;
+    private long mavenMetadataTtl;
 
     private DeployConfig(String vertxHome, String artifactRepo, String nexusUrl) {
         this.vertxHome = Paths.get(vertxHome);
@@ -127,7 +163,16 @@ public class DeployConfig {
                 .withLoggerFactoryName(config)
                 .withTypedDeploy(config)
                 .withPollInterval(config)
-                .withRemoteRepoUpdatePolicy(config);
+                .withRemoteRepoUpdatePolicy(config)
+                .withMavenRepoHttpClient(config)
+                .withArtifactDownloadParallelism(config)
+                .withArtifactCacheMaxSize(config)
+                .withArtifactExtractMode(config)
+                .withModuleReconcileInterval(config)
+                .withApplicationParallelism(config)
+                .withApplicationLaunchMode(config)
+                .withApplicationReadyTimeout(config)
+                .withWorkerPool(config);
 
         if (!config.isEmpty()) {
             config.fieldNames().forEach(s -> LOG.info("Unused variable in config '{}',", s));
@@ -179,6 +224,88 @@ public class DeployConfig {
         return this;
     }
 
+    private DeployConfig withMavenRepoHttpClient(JsonObject config) {
+        this.mavenRepoMaxConnections = config.getInteger(MAVEN_REPO_MAX_CONNECTIONS, 20);
+        this.mavenRepoConnectTimeout = config.getInteger(MAVEN_REPO_CONNECT_TIMEOUT, 10000);
+        this.mavenRepoReadTimeout = config.getInteger(MAVEN_REPO_READ_TIMEOUT, 60000);
+        this.mavenMetadataTtl = Math.max(0L, config.getLong(MAVEN_METADATA_TTL, 30000L));
+        config.remove(MAVEN_REPO_MAX_CONNECTIONS);
+        config.remove(MAVEN_REPO_CONNECT_TIMEOUT);
+        config.remove(MAVEN_REPO_READ_TIMEOUT);
+        config.remove(MAVEN_METADATA_TTL);
+        return this;
+    }
+
+    private DeployConfig withArtifactDownloadParallelism(JsonObject config) {
+        this.artifactDownloadParallelism = Math.max(1, config.getInteger(ARTIFACT_DOWNLOAD_PARALLELISM, 4));
+        config.remove(ARTIFACT_DOWNLOAD_PARALLELISM);
+        return this;
+    }
+
+    private DeployConfig withArtifactCacheMaxSize(JsonObject config) {
+        this.artifactCacheMaxSize = config.getLong(ARTIFACT_CACHE_MAX_SIZE, 2048L);
+        config.remove(ARTIFACT_CACHE_MAX_SIZE);
+        return this;
+    }
+
+    private DeployConfig withArtifactExtractMode(JsonObject config) {
+        String mode = config.getString(ARTIFACT_EXTRACT_MODE, ExtractMode.FULL.name());
+        try {
+            this.artifactExtractMode = ExtractMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown artifact extract mode {}, using {}", mode, ExtractMode.FULL);
+            this.artifactExtractMode = ExtractMode.FULL;
+        }
+        this.artifactExtractKeep = Math.max(0, config.getInteger(ARTIFACT_EXTRACT_KEEP, 2));
+        this.artifactExtractParallelism = Math.max(1, config.getInteger(ARTIFACT_EXTRACT_PARALLELISM, 1));
+        config.remove(ARTIFACT_EXTRACT_MODE);
+        config.remove(ARTIFACT_EXTRACT_KEEP);
+        config.remove(ARTIFACT_EXTRACT_PARALLELISM);
+        return this;
+    }
+
+    private DeployConfig withModuleReconcileInterval(JsonObject config) {
+        this.moduleReconcileInterval = Math.max(0L, config.getLong(MODULE_RECONCILE_INTERVAL, 60000L));
+        config.remove(MODULE_RECONCILE_INTERVAL);
+        return this;
+    }
+
+    private DeployConfig withApplicationParallelism(JsonObject config) {
+        this.applicationParallelism = Math.max(1, config.getInteger(APPLICATION_PARALLELISM, 1));
+        config.remove(APPLICATION_PARALLELISM);
+        return this;
+    }
+
+    private DeployConfig withApplicationLaunchMode(JsonObject config) {
+        String mode = config.getString(APPLICATION_LAUNCH_MODE, LaunchMode.PROCESS.name());
+        try {
+            this.applicationLaunchMode = LaunchMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown application launch mode {}, using {}", mode, LaunchMode.PROCESS);
+            this.applicationLaunchMode = LaunchMode.PROCESS;
+        }
+        this.applicationCds = config.getBoolean(APPLICATION_CDS, false);
+        config.remove(APPLICATION_LAUNCH_MODE);
+        config.remove(APPLICATION_CDS);
+        return this;
+    }
+
+    private DeployConfig withApplicationReadyTimeout(JsonObject config) {
+        this.applicationReadyTimeout = Math.max(0L, config.getLong(APPLICATION_READY_TIMEOUT, 0L));
+        this.applicationDrainTimeout = Math.max(0L, config.getLong(APPLICATION_DRAIN_TIMEOUT, 0L));
+        config.remove(APPLICATION_READY_TIMEOUT);
+        config.remove(APPLICATION_DRAIN_TIMEOUT);
+        return this;
+    }
+
+    private DeployConfig withWorkerPool(JsonObject config) {
+        this.workerPoolSize = Math.max(1, config.getInteger(WORKER_POOL_SIZE, 4));
+        this.workerMaxExecuteTime = Math.max(1L, config.getLong(WORKER_MAX_EXECUTE_TIME, 120L));
+        config.remove(WORKER_POOL_SIZE);
+        config.remove(WORKER_MAX_EXECUTE_TIME);
+        return this;
+    }
+
     private DeployConfig withCluster(JsonObject config) {
         this.asCluster = config.getBoolean(CLUSTER, true);
         config.remove(CLUSTER);
@@ -318,4 +445,72 @@ public class DeployConfig {
     public long getPollIntervall() {
         return pollInterval;
     }
+
+    public int getMavenRepoMaxConnections() {
+        return mavenRepoMaxConnections;
+    }
+
+    public int getMavenRepoConnectTimeout() {
+        return mavenRepoConnectTimeout;
+    }
+
+    public int getMavenRepoReadTimeout() {
+        return mavenRepoReadTimeout;
+    }
+
+    public long getMavenMetadataTtl() {
+        return mavenMetadataTtl;
+    }
+
+    public int getArtifactDownloadParallelism() {
+        return artifactDownloadParallelism;
+    }
+
+    public long getArtifactCacheMaxSize() {
+        return artifactCacheMaxSize;
+    }
+
+    public ExtractMode getArtifactExtractMode() {
+        return artifactExtractMode;
+    }
+
+    public int getArtifactExtractKeep() {
+        return artifactExtractKeep;
+    }
+
+    public int getArtifactExtractParallelism() {
+        return artifactExtractParallelism;
+    }
+
+    public long getModuleReconcileInterval() {
+        return moduleReconcileInterval;
+    }
+
+    public int getApplicationParallelism() {
+        return applicationParallelism;
+    }
+
+    public LaunchMode getApplicationLaunchMode() {
+        return applicationLaunchMode;
+    }
+
+    public boolean isApplicationCds() {
+        return applicationCds;
+    }
+
+    public long getApplicationReadyTimeout() {
+        return applicationReadyTimeout;
+    }
+
+    public long getApplicationDrainTimeout() {
+        return applicationDrainTimeout;
+    }
+
+    public int getWorkerPoolSize() {
+        return workerPoolSize;
+    }
+
+    public long getWorkerMaxExecuteTime() {
+        return workerMaxExecuteTime;
+    }
 }
@@ -0,0 +1,100 @@
+package nl.jpoint.vertx.deploy.agent.command;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.maven.MavenVerticleFactory;
+import io.vertx.maven.ResolverOptions;
+import io.vertx.rxjava.core.Vertx;
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import nl.jpoint.vertx.deploy.agent.util.AetherUtil;
+import nl.jpoint.vertx.deploy.agent.util.LogConstants;
+import nl.jpoint.vertx.deploy.agent.util.ModuleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static rx.Observable.just;
+
+/**
+ * Deploys an application as verticle in the Vert.x instance of the agent, the maven verticle factory resolves the
+ * application and loads it in its own classloader. Applications share the JVM and event loops of the agent.
+ */
+public class DeployVerticle implements Command<DeployApplicationRequest> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeployVerticle.class);
+    private static final String MAVEN_PREFIX = "maven";
+    private static final String PORT = "vertxdeploy.port";
+
+    private final Vertx rxVertx;
+    private final DeployConfig deployConfig;
+    private final ModuleRegistry moduleRegistry;
+    private final RunApplication runApplication;
+
+    public DeployVerticle(io.vertx.core.Vertx vertx, DeployConfig deployConfig, ModuleRegistry moduleRegistry) {
+        this.rxVertx = new Vertx(vertx);
+        this.deployConfig = deployConfig;
+        this.moduleRegistry = moduleRegistry;
+        this.runApplication = new RunApplication(vertx, deployConfig);
+    }
+
+    /**
+     * Replaces the maven verticle factory with one that resolves against the configured maven repo. The factory is a
+     * provided dependency and has to be on the classpath of the agent, as in the full Vert.x distribution.
+     */
+    public static void registerMavenFactory(io.vertx.core.Vertx vertx, DeployConfig deployConfig) {
+        try {
+            Class.forName("io.vertx.maven.MavenVerticleFactory", false, DeployVerticle.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Embedded launch mode requires vertx-maven-service-factory on the classpath of the agent.", e);
+        }
+        List<io.vertx.core.spi.VerticleFactory> factories = vertx.verticleFactories().stream()
+                .filter(factory -> MAVEN_PREFIX.equals(factory.prefix()))
+                .collect(Collectors.toList());
+        factories.forEach(vertx::unregisterVerticleFactory);
+        ResolverOptions options = new ResolverOptions().setRemoteSnapshotPolicy(deployConfig.getRemoteRepoPolicy());
+        if (deployConfig.isMavenRemote()) {
+            options.setRemoteRepositories(Collections.singletonList(AetherUtil.remoteRepoUrl(deployConfig)));
+        }
+        vertx.registerVerticleFactory(new MavenVerticleFactory(options));
+    }
+
+    @Override
+    public Observable<DeployApplicationRequest> executeAsync(DeployApplicationRequest request) {
+        LOG.info("[{} - {}]: Deploying module '{}' as verticle", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId());
+        return runApplication.readServiceDefaults(request)
+                .flatMap(this::readApplicationConfig)
+                .flatMap(config -> deployVerticle(request, config))
+                .doOnError(t -> LOG.error("[{} - {}]: Error deploying module '{}', {}", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId(), t.getMessage()));
+    }
+
+    private Observable<JsonObject> readApplicationConfig(DeployApplicationRequest request) {
+        String applicationConfig = request.getConfigLocation().isEmpty() ? deployConfig.getConfigLocation() : request.getConfigLocation();
+        if (applicationConfig.isEmpty()) {
+            return just(new JsonObject());
+        }
+        return rxVertx.fileSystem().rxReadFile(applicationConfig)
+                .toObservable()
+                .map(buffer -> new JsonObject(buffer.toString()));
+    }
+
+    private Observable<DeployApplicationRequest> deployVerticle(DeployApplicationRequest request, JsonObject config) {
+        if (!request.getJavaOpts().isEmpty() || request.isTestScope()) {
+            LOG.warn("[{} - {}]: Java opts and test scope are not applied to module '{}' deployed as verticle.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId());
+        }
+        DeploymentOptions options = new DeploymentOptions()
+                .setConfig(config.put(PORT, deployConfig.getHttpPort()))
+                .setInstances(Integer.parseInt(request.getInstances()));
+        return rxVertx.rxDeployVerticle(runApplication.getMavenCommand(request), options)
+                .toObservable()
+                .map(deploymentId -> {
+                    LOG.info("[{} - {}]: Deployed module '{}' with deploymentId '{}'", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId(), deploymentId);
+                    moduleRegistry.markDeployed(request, deploymentId);
+                    return request;
+                });
+    }
+}
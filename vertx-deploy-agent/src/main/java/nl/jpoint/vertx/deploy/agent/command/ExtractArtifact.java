@@ -4,113 +4,237 @@ package nl.jpoint.vertx.deploy.agent.command;
 import io.vertx.rxjava.core.Vertx;
 import nl.jpoint.vertx.deploy.agent.DeployConfig;
 import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
+import nl.jpoint.vertx.deploy.agent.util.ArtifactArchive;
 import nl.jpoint.vertx.deploy.agent.util.ArtifactContextUtil;
-import nl.jpoint.vertx.deploy.agent.util.FileDigestUtil;
+import nl.jpoint.vertx.deploy.agent.util.ExtractManifest;
+import nl.jpoint.vertx.deploy.agent.util.ExtractMode;
 import nl.jpoint.vertx.deploy.agent.util.GzipExtractor;
+import nl.jpoint.vertx.deploy.agent.util.ReleaseDirectory;
+import nl.jpoint.vertx.deploy.agent.util.WorkerPool;
+import nl.jpoint.vertx.deploy.agent.util.ZipExtractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import rx.Observable;
 
 import java.io.IOException;
-import java.net.URI;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Arrays;
-import java.util.HashMap;
-
-import static rx.Observable.just;
-
-public class ExtractArtifact<T extends ModuleRequest> implements Command<T> {
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+public class ExtractArtifact<T extends ModuleRequest> {
     private static final Logger LOG = LoggerFactory.getLogger(ExtractArtifact.class);
 
     private final Vertx vertx;
     private final DeployConfig config;
     private final Path basePath;
-    private final FileDigestUtil fileDigestUtil;
+    private final WorkerPool workerPool;
+    private final ForkJoinPool extractPool;
+    private final List<Lock> locks = new ArrayList<>();
 
-    public ExtractArtifact(io.vertx.core.Vertx vertx, DeployConfig config, Path basePath) {
+    public ExtractArtifact(io.vertx.core.Vertx vertx, DeployConfig config, Path basePath, WorkerPool workerPool) {
         this.vertx = new Vertx(vertx);
         this.config = config;
         this.basePath = basePath;
-        this.fileDigestUtil = new FileDigestUtil();
+        this.workerPool = workerPool;
+        this.extractPool = workerPool.getExtractPool();
     }
 
-    @Override
-    public Observable<T> executeAsync(T request) {
-
-        switch (request.getType()) {
-            case ModuleRequest.CONFIG_TYPE:
-            case ModuleRequest.ZIP_TYPE:
-                return extractZip(request);
-            case ModuleRequest.GZIP_TYPE:
-                return extractGZip(request);
-            default:
-                LOG.error("Unsupported artifact type : " + request.getType());
-                throw new IllegalStateException();
+    /**
+     * Extracts from an archive that is already open, the artifact context read from the archive is reused. The base
+     * location is locked while extracting, a tar.gz locks it once the context is read.
+     */
+    public T extract(T request, ArtifactArchive archive) {
+        if (basePath != null) {
+            lock(basePath);
+        }
+        try {
+            switch (request.getType()) {
+                case ModuleRequest.CONFIG_TYPE:
+                case ModuleRequest.ZIP_TYPE:
+                    return extractZip(request, archive);
+                case ModuleRequest.GZIP_TYPE:
+                    return extractGZip(request, archive);
+                default:
+                    LOG.error("Unsupported artifact type : " + request.getType());
+                    throw new IllegalStateException();
+            }
+        } finally {
+            locks.forEach(Lock::unlock);
+            locks.clear();
         }
     }
 
+    private void lock(Path location) {
+        Lock lock = workerPool.getLocationLock(location);
+        lock.lock();
+        locks.add(lock);
+    }
 
-    private Observable<T> extractZip(T request) {
-        try (FileSystem zipFs = this.getFileSystem(request.getLocalPath(config.getArtifactRepo()))) {
-            LOG.info("[{} - {}]: Extracting artifact {} to {}.", request.getLogName(), request.getId(), request.getModuleId(), basePath);
-            if (request.deleteBase()) {
-                removeBasePath(request, basePath);
-            }
-            final Path zipRoot = zipFs.getPath("/");
-            Files.walkFileTree(zipRoot, copyingFileVisitor(basePath, request));
-            LOG.info("[{} - {}]: Extracted artifact {} to {}.", request.getLogName(), request.getId(), request.getModuleId(), basePath);
-            return just(request)
-                    .doOnError(t -> LOG.error("Unable to extract artifact {}, {}", t.getMessage(), t));
-        } catch (IOException | InvalidPathException e) {
-            LOG.error("[{} - {}]: Error while extracting artifact {} -> {}.", request.getLogName(), request.getId(), request.getModuleId(), e.getMessage(), e);
-            throw new IllegalStateException();
+
+    private T extractZip(T request, ArtifactArchive archive) {
+        LOG.info("[{} - {}]: Extracting artifact {} to {}.", request.getLogName(), request.getId(), request.getModuleId(), basePath);
+        if (isSwap(request)) {
+            boolean changed = extractRelease(request, basePath, release -> new ZipExtractor<>(request, extractPool).extractZip(archive.getZipFile(), release, null));
+            checkRestart(request, changed);
+            return request;
+        }
+        ExtractManifest manifest = prepareBasePath(request, basePath);
+        boolean changed = new ZipExtractor<>(request, extractPool).extractZip(archive.getZipFile(), basePath, manifest);
+        completeManifest(request, manifest);
+        checkRestart(request, changed);
+        LOG.info("[{} - {}]: Extracted artifact {} to {}.", request.getLogName(), request.getId(), request.getModuleId(), basePath);
+        return request;
+    }
+
+    private void checkRestart(T request, boolean changed) {
+        if (!request.restart() && request.checkConfig() && changed) {
+            LOG.warn("[{} - {}]: Config changed, forcing container restart if necessary.", request.getLogName(), request.getId(), request.getModuleId());
+            request.setRestart(true);
         }
     }
 
-    private Observable<T> extractGZip(T request) {
+    /**
+     * Without a known base path the target is resolved from the artifact_context.xml while the archive is read, so
+     * every tar.gz is decompressed once.
+     */
+    private T extractGZip(T request, ArtifactArchive archive) {
         GzipExtractor<T> gzipExtractor = new GzipExtractor<>(request);
-        if (request.deleteBase()) {
-            removeBasePath(request, basePath);
-        }
-        gzipExtractor.extractTar(request.getLocalPath(config.getArtifactRepo()), basePath);
-        return just(request);
-    }
-
-    private SimpleFileVisitor<Path> copyingFileVisitor(final Path basePath, T request) {
-        return new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
-                byte[] oldDigest = null;
-                byte[] newDigest = null;
-                if (ArtifactContextUtil.ARTIFACT_CONTEXT.equals(file.getFileName().toString())) {
-                    return FileVisitResult.CONTINUE;
-                }
-                final Path unpackFile = Paths.get(basePath.toString(), file.toString());
-                if (request.checkConfig()) {
-                    oldDigest = fileDigestUtil.getFileMd5Sum(unpackFile);
-                }
-                Files.copy(file, unpackFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
-                if (request.checkConfig()) {
-                    newDigest = fileDigestUtil.getFileMd5Sum(unpackFile);
-                }
-                if (!request.restart() && request.checkConfig() && !Arrays.equals(oldDigest, newDigest)) {
-                    LOG.warn("[{} - {}]: Config changed, forcing container restart if necessary.", request.getLogName(), request.getId(), request.getModuleId());
-                    request.setRestart(true);
-                }
-
-                return FileVisitResult.CONTINUE;
+        Path input = archive.getPath();
+        if (isSwap(request)) {
+            if (basePath != null) {
+                extractRelease(request, basePath, release -> gzipExtractor.extractTar(input, release));
+                return request;
             }
+            AtomicReference<ReleaseDirectory> releaseDirectory = new AtomicReference<>();
+            Path release = gzipExtractor.extractTar(input, context -> {
+                applyArtifactContext(request, context);
+                lock(request.getBaseLocation());
+                releaseDirectory.set(new ReleaseDirectory(request.getBaseLocation(), config.getArtifactExtractKeep()));
+                return createRelease(request, releaseDirectory.get());
+            });
+            activateRelease(request, releaseDirectory.get(), release);
+            return request;
+        }
+        AtomicReference<ExtractManifest> manifest = new AtomicReference<>();
+        Path target;
+        if (basePath != null) {
+            manifest.set(prepareBasePath(request, basePath));
+            gzipExtractor.extractTar(input, basePath, manifest.get());
+            target = basePath;
+        } else {
+            target = gzipExtractor.extractTar(input, context -> {
+                applyArtifactContext(request, context);
+                lock(request.getBaseLocation());
+                manifest.set(prepareBasePath(request, request.getBaseLocation()));
+                return request.getBaseLocation();
+            }, manifest::get);
+        }
+        completeManifest(request, manifest.get());
+        LOG.info("[{} - {}]: Extracted artifact {} to {}.", request.getLogName(), request.getId(), request.getModuleId(), target);
+        return request;
+    }
+
+    public static void applyArtifactContext(ModuleRequest request, byte[] context) {
+        ArtifactContextUtil artifactContextUtil = new ArtifactContextUtil(request, context);
+        request.setRestartCommand(artifactContextUtil.getRestartCommand());
+        request.setTestCommand(artifactContextUtil.getTestCommand());
+        request.setBaseLocation(artifactContextUtil.getBaseLocation());
+    }
+
+    private boolean isDelta(T request) {
+        return request.deleteBase() && ExtractMode.DELTA.equals(config.getArtifactExtractMode());
+    }
+
+    private boolean isSwap(T request) {
+        return request.deleteBase() && ExtractMode.SWAP.equals(config.getArtifactExtractMode());
+    }
 
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
-                final Path subDir = Paths.get(basePath.toString(), dir.toString());
-                if (!subDir.toFile().exists()) {
-                    Files.createDirectory(subDir);
-                }
-                return FileVisitResult.CONTINUE;
+    /**
+     * @return true if the activated release replaced a different release, releases are named after the sha1 of the
+     * artifact so an unchanged artifact activates the same release.
+     */
+    private boolean extractRelease(T request, Path target, Consumer<Path> extractor) {
+        ReleaseDirectory releaseDirectory = new ReleaseDirectory(target, config.getArtifactExtractKeep());
+        Path release = createRelease(request, releaseDirectory);
+        if (release != null) {
+            extractor.accept(release);
+        }
+        return activateRelease(request, releaseDirectory, release);
+    }
+
+    /**
+     * @return the new release directory to extract to, or null if the release was extracted before.
+     */
+    private Path createRelease(T request, ReleaseDirectory releaseDirectory) {
+        String name = releaseName(request);
+        if (releaseDirectory.getRelease(name).isPresent()) {
+            LOG.info("[{} - {}]: Release {} of artifact {} already extracted.", request.getLogName(), request.getId(), name, request.getModuleId());
+            return null;
+        }
+        try {
+            return releaseDirectory.createRelease(name);
+        } catch (IOException e) {
+            LOG.error("[{} - {}]: Error while creating release {} of artifact {} -> {}.", request.getLogName(), request.getId(), name, request.getModuleId(), e.getMessage(), e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean activateRelease(T request, ReleaseDirectory releaseDirectory, Path created) {
+        try {
+            Path release;
+            if (created != null) {
+                releaseDirectory.completeRelease(created);
+                release = created;
+            } else {
+                release = releaseDirectory.getRelease(releaseName(request))
+                        .orElseThrow(() -> new IllegalStateException("Missing release of " + request.getModuleId()));
             }
-        };
+            Optional<Path> previous = releaseDirectory.getActive();
+            releaseDirectory.activate(release);
+            releaseDirectory.prune();
+            LOG.info("[{} - {}]: Activated release {} of artifact {}.", request.getLogName(), request.getId(), release, request.getModuleId());
+            return !previous.isPresent() || !previous.get().equals(release);
+        } catch (IOException e) {
+            LOG.error("[{} - {}]: Error while activating artifact {} -> {}.", request.getLogName(), request.getId(), request.getModuleId(), e.getMessage(), e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String releaseName(T request) {
+        return request.getVersion() + "-" + (request.getSha1() != null ? request.getSha1() : System.currentTimeMillis());
+    }
+
+    private ExtractManifest prepareBasePath(T request, Path target) {
+        if (!request.deleteBase()) {
+            return ExtractManifest.load(config.getArtifactRepo(), target, request.getGroupId() + ":" + request.getArtifactId());
+        }
+        if (!isDelta(request)) {
+            ExtractManifest.delete(config.getArtifactRepo(), target);
+            removeBasePath(request, target);
+            return null;
+        }
+        ExtractManifest manifest = ExtractManifest.load(config.getArtifactRepo(), target);
+        if (!manifest.isExisting()) {
+            removeBasePath(request, target);
+        }
+        return manifest;
+    }
+
+    private void completeManifest(T request, ExtractManifest manifest) {
+        if (manifest == null) {
+            return;
+        }
+        if (!request.deleteBase()) {
+            manifest.save();
+            return;
+        }
+        int removed = manifest.removeStale();
+        manifest.save();
+        LOG.info("[{} - {}]: Removed {} stale files from {}.", request.getLogName(), request.getId(), removed, request.getModuleId());
     }
 
     private void removeBasePath(ModuleRequest request, Path basePath) {
@@ -125,9 +249,5 @@ public class ExtractArtifact<T extends ModuleRequest> implements Command<T> {
         }
     }
 
-    private FileSystem getFileSystem(Path location) throws IOException {
-        URI uri = URI.create("jar:file:" + location.toUri().getPath());
-        return FileSystems.newFileSystem(uri, new HashMap<String, String>());
-    }
 
 }
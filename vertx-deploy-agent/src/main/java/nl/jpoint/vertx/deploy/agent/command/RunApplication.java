@@ -4,19 +4,25 @@ import com.amazonaws.util.EC2MetadataUtils;
 import io.vertx.rxjava.core.Vertx;
 import nl.jpoint.vertx.deploy.agent.DeployConfig;
 import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import nl.jpoint.vertx.deploy.agent.util.AetherUtil;
+import nl.jpoint.vertx.deploy.agent.util.CdsArchive;
+import nl.jpoint.vertx.deploy.agent.util.ClasspathResolver;
+import nl.jpoint.vertx.deploy.agent.util.DrainCoordinator;
+import nl.jpoint.vertx.deploy.agent.util.LaunchMode;
 import nl.jpoint.vertx.deploy.agent.util.LogConstants;
 import nl.jpoint.vertx.deploy.agent.util.ObservableCommand;
+import nl.jpoint.vertx.deploy.agent.util.WorkerPool;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 
@@ -28,26 +34,42 @@ public class RunApplication implements Command<DeployApplicationRequest> {
     private static final String INSTANCES = "INSTANCES";
     private static final String MAIN_SERVICE = "MAIN_SERVICE";
     private static final String CONFIG_FILE = "CONFIG_FILE";
+    private static final String START_AFTER = "START_AFTER";
 
     private static final Logger LOG = LoggerFactory.getLogger(RunApplication.class);
     private final Vertx rxVertx;
     private final DeployConfig deployConfig;
+    private final ClasspathResolver classpathResolver;
+    private final CdsArchive cdsArchive;
+    private final WorkerPool workerPool;
 
     public RunApplication(final io.vertx.core.Vertx vertx, final DeployConfig deployConfig) {
+        this(vertx, deployConfig, null, null, null);
+    }
+
+    public RunApplication(final io.vertx.core.Vertx vertx, final DeployConfig deployConfig, final ClasspathResolver classpathResolver, final CdsArchive cdsArchive, final WorkerPool workerPool) {
         this.rxVertx = new Vertx(vertx);
         this.deployConfig = deployConfig;
+        this.classpathResolver = classpathResolver;
+        this.cdsArchive = cdsArchive;
+        this.workerPool = workerPool;
     }
 
     @Override
     public Observable<DeployApplicationRequest> executeAsync(final DeployApplicationRequest request) {
         LOG.info("[{} - {}]: Running module '{}'", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId());
         return this.readServiceDefaults(request)
-                .flatMap(this::startApplication)
+                .flatMap(this::resolveMain)
+                .flatMap(main -> cdsJavaOpts(request)
+                        .flatMap(cdsOpts -> startApplication(request, main, cdsOpts)))
                 .doOnError(t -> LOG.error("[{} - {}]: Error running module '{}', {}", LogConstants.DEPLOY_REQUEST, request.getId().toString(), request.getModuleId(), t.getMessage()));
 
     }
 
-    Observable<DeployApplicationRequest> readServiceDefaults(DeployApplicationRequest request) {
+    public Observable<DeployApplicationRequest> readServiceDefaults(DeployApplicationRequest request) {
+        if (request.hasServiceDefaults()) {
+            return just(request);
+        }
         Properties serviceProperties = new Properties();
         String path = deployConfig.getServiceConfigLocation() + request.getGroupId() + ":" + request.getArtifactId();
         return rxVertx.fileSystem().rxExists(path)
@@ -77,16 +99,44 @@ public class RunApplication implements Command<DeployApplicationRequest> {
                                 request.withConfigLocation(serviceProperties.getProperty(CONFIG_FILE, ""));
                                 request.withInstances(serviceProperties.getProperty(INSTANCES, "1"));
                                 request.withMainService(serviceProperties.getProperty(MAIN_SERVICE, ""));
+                                request.withStartAfter(serviceProperties.getProperty(START_AFTER, ""));
                                 return just(request);
                             });
-                });
+                })
+                .doOnNext(DeployApplicationRequest::markServiceDefaults);
     }
 
-    private Observable<DeployApplicationRequest> startApplication(DeployApplicationRequest deployApplicationRequest) {
+    /**
+     * The verticle to start, in classpath mode the dependencies are resolved by the agent and passed on the classpath.
+     */
+    private Observable<List<String>> resolveMain(DeployApplicationRequest request) {
+        if (deployConfig.getApplicationLaunchMode() != LaunchMode.CLASSPATH || classpathResolver == null) {
+            return just(Collections.singletonList(getMavenCommand(request)));
+        }
+        return workerPool.rxExecute("resolve classpath " + request.getModuleId(), () -> {
+            List<Path> classpath = classpathResolver.resolve(request);
+            return Arrays.asList(classpathResolver.getMainVerticle(request, classpath), "-cp", ClasspathResolver.toClasspath(classpath));
+        });
+    }
 
-        List<String> command = new ArrayList<>(Arrays.asList(deployConfig.getVertxHome().resolve("bin/vertx").toString(), "start", getMavenCommand(deployApplicationRequest), "-id", deployApplicationRequest.getModuleId()));
-        if (deployConfig.isMavenRemote()) {
-            command.add("-Dvertx.maven.remoteRepos=" + buildRemoteRepo());
+    /**
+     * Prepares the class data sharing archive on the worker pool, it lists and removes files of the module.
+     */
+    private Observable<String> cdsJavaOpts(DeployApplicationRequest request) {
+        if (cdsArchive == null) {
+            return just("");
+        }
+        return workerPool.rxExecute("prepare cds " + request.getModuleId(), () -> cdsArchive.getJavaOpts(request));
+    }
+
+    private Observable<DeployApplicationRequest> startApplication(DeployApplicationRequest deployApplicationRequest, List<String> main, String cdsOpts) {
+
+        List<String> command = new ArrayList<>(Arrays.asList(deployConfig.getVertxHome().resolve("bin/vertx").toString(), "start"));
+        command.addAll(main);
+        command.add("-id");
+        command.add(deployApplicationRequest.getModuleId());
+        if (deployConfig.isMavenRemote() && main.size() == 1) {
+            command.add("-Dvertx.maven.remoteRepos=" + AetherUtil.remoteRepoUrl(deployConfig));
             command.add("-Dvertx.maven.remoteSnapshotPolicy=" + deployConfig.getRemoteRepoPolicy());
         }
         String applicationConfig = deployApplicationRequest.getConfigLocation().isEmpty() ? deployConfig.getConfigLocation() : deployApplicationRequest.getConfigLocation();
@@ -94,9 +144,10 @@ public class RunApplication implements Command<DeployApplicationRequest> {
             command.add("-conf");
             command.add(applicationConfig);
         }
-        if (!deployApplicationRequest.getJavaOpts().isEmpty() || !deployConfig.getDefaultJavaOpts().isEmpty()) {
+        String javaOpts = (deployApplicationRequest.getJavaOpts() + " " + cdsOpts).trim();
+        if (!javaOpts.isEmpty() || !deployConfig.getDefaultJavaOpts().isEmpty()) {
             command.add("--java-opts");
-            command.add(deployApplicationRequest.getJavaOpts());
+            command.add(javaOpts);
             command.add(deployConfig.getDefaultJavaOpts());
         }
         command.add("--instances");
@@ -112,6 +163,9 @@ public class RunApplication implements Command<DeployApplicationRequest> {
 
         command.add("-Dvertxdeploy.port=" + deployConfig.getHttpPort());
         command.add("-Dvertxdeploy.scope.test=" + deployApplicationRequest.isTestScope());
+        if (deployConfig.getApplicationDrainTimeout() > 0) {
+            command.add("-Dvertxdeploy.drain=" + DrainCoordinator.getDrainFile(deployConfig, deployApplicationRequest.getModuleId()));
+        }
 
         ProcessBuilder processBuilder = new ProcessBuilder().command(command);
         ObservableCommand<DeployApplicationRequest> observableCommand = new ObservableCommand<>(deployApplicationRequest, 0, rxVertx);
@@ -129,15 +183,5 @@ public class RunApplication implements Command<DeployApplicationRequest> {
         }
         return String.format("maven:%s", request.getModuleId());
     }
-
-    private String buildRemoteRepo() {
-        URI remoteRepo = deployConfig.getNexusUrl();
-        if (remoteRepo != null && deployConfig.isHttpAuthentication()) {
-            URIBuilder builder = new URIBuilder(remoteRepo);
-            builder.setUserInfo(deployConfig.getHttpAuthUser() + ":" + deployConfig.getHttpAuthPassword());
-            return builder.toString();
-        }
-        return deployConfig.getNexusUrl().toString();
-    }
 }
 
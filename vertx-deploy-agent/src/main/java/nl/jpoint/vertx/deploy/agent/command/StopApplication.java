@@ -1,34 +1,43 @@
 package nl.jpoint.vertx.deploy.agent.command;
 
+import io.vertx.core.json.JsonObject;
 import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.buffer.Buffer;
 import nl.jpoint.vertx.deploy.agent.DeployConfig;
 import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import nl.jpoint.vertx.deploy.agent.util.DrainCoordinator;
 import nl.jpoint.vertx.deploy.agent.util.LogConstants;
+import nl.jpoint.vertx.deploy.agent.util.ModuleRegistry;
 import nl.jpoint.vertx.deploy.agent.util.ObservableCommand;
 import nl.jpoint.vertx.deploy.agent.util.ProcessUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static rx.Observable.just;
 
 public class StopApplication implements Command<DeployApplicationRequest> {
 
     private static final Logger LOG = LoggerFactory.getLogger(StopApplication.class);
-    private static final Long POLLING_INTERVAL_IN_MS = 500L;
     private final LocalDateTime timeout;
     private final DeployConfig config;
-    private final ProcessUtils processUtils;
+    private final ModuleRegistry moduleRegistry;
+    private final DrainCoordinator drainCoordinator;
     private final Vertx rxVertx;
 
     private String moduleIdToStop;
 
-    public StopApplication(io.vertx.core.Vertx vertx, DeployConfig config) {
+    public StopApplication(io.vertx.core.Vertx vertx, DeployConfig config, ModuleRegistry moduleRegistry, DrainCoordinator drainCoordinator) {
         this.config = config;
-        this.processUtils = new ProcessUtils(config);
+        this.moduleRegistry = moduleRegistry;
+        this.drainCoordinator = drainCoordinator;
         this.rxVertx = new Vertx(vertx);
         this.timeout = LocalDateTime.now().plusMinutes(config.getAwsMaxRegistrationDuration());
     }
@@ -36,9 +45,12 @@ public class StopApplication implements Command<DeployApplicationRequest> {
     @Override
     public Observable<DeployApplicationRequest> executeAsync(DeployApplicationRequest request) {
         LOG.info("[{} - {}]: Waiting for module {} to stop.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getMavenArtifactId());
-        return this.stopApplication(request)
-                .flatMap(this::doPoll)
-                .flatMap(this::removeRunFile);
+        moduleIdToStop = request.getMavenArtifactId() + ":" + moduleRegistry.getRunningVersion(request);
+        return drainCoordinator.drain(request, moduleIdToStop)
+                .flatMap(drained -> this.stopApplication(request))
+                .flatMap(this::waitForExit)
+                .flatMap(this::removeRunFile)
+                .flatMap(r -> drainCoordinator.clear(moduleIdToStop).map(x -> r));
     }
 
     private Observable<DeployApplicationRequest> removeRunFile(DeployApplicationRequest deployApplicationRequest) {
@@ -58,7 +70,6 @@ public class StopApplication implements Command<DeployApplicationRequest> {
     }
 
     private Observable<DeployApplicationRequest> stopApplication(DeployApplicationRequest request) {
-        moduleIdToStop = request.getMavenArtifactId() + ":" + new ProcessUtils(config).getRunningVersion(request);
         LOG.info("[{} - {}]: Stopping application with applicationId '{}'.", LogConstants.DEPLOY_REQUEST, request.getId(), moduleIdToStop);
         ProcessBuilder processBuilder = new ProcessBuilder().command(Arrays.asList(config.getVertxHome().resolve("bin/vertx").toString(), "stop", moduleIdToStop));
         ObservableCommand<DeployApplicationRequest> observableCommand = new ObservableCommand<>(request, 0, rxVertx);
@@ -68,23 +79,40 @@ public class StopApplication implements Command<DeployApplicationRequest> {
                 .doOnError(t -> LOG.error("[{} - {}]: Failed to stop module {}", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId()));
     }
 
-    private Observable<DeployApplicationRequest> doPoll(DeployApplicationRequest request) {
-        return rxVertx.timerStream(POLLING_INTERVAL_IN_MS).toObservable()
-                .flatMap(x -> processUtils.checkModuleRunning(request))
-                .flatMap(result -> {
-                            if (LocalDateTime.now().isAfter(timeout)) {
-                                LOG.error("[{} - {}]: Timeout while waiting for application to stop. ", LogConstants.DEPLOY_REQUEST, request.getId());
-                                throw new IllegalStateException();
-                            }
-                    if (!request.isRunning()) {
-                        LOG.info("[{} - {}]: Application {} stopped.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getMavenArtifactId());
+    /**
+     * Waits for the exit of the application process, the process is taken from the registry or the run file.
+     */
+    private Observable<DeployApplicationRequest> waitForExit(DeployApplicationRequest request) {
+        return rxVertx.fileSystem().rxExists(config.getRunDir() + moduleIdToStop)
+                .toObservable()
+                .flatMap(exists -> exists ? rxVertx.fileSystem().rxReadFile(config.getRunDir() + moduleIdToStop).toObservable().map(Buffer::toString) : just(""))
+                .flatMap(runFile -> {
+                    ProcessHandle handle = moduleRegistry.getProcess(moduleIdToStop);
+                    if (handle == null && !runFile.isEmpty()) {
+                        handle = ProcessUtils.fromRunInfo(new JsonObject(runFile)).orElse(null);
+                    }
+                    return handle != null ? just(Optional.of(handle)) : moduleRegistry.rxFindProcess(moduleIdToStop);
+                })
+                .flatMap(handle -> {
+                    if (!handle.isPresent()) {
                         return just(request);
-                    } else {
-                        LOG.trace("[{} - {}]: Application {} still running.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getMavenArtifactId());
-                        return doPoll(request);
                     }
-                        }
-                )
+                    LOG.trace("[{} - {}]: Waiting for process {} of application {} to exit.", LogConstants.DEPLOY_REQUEST, request.getId(), handle.get().pid(), request.getMavenArtifactId());
+                    return ProcessUtils.onExit(rxVertx, handle.get().onExit())
+                            .timeout(Math.max(0L, Duration.between(LocalDateTime.now(), timeout).toMillis()), TimeUnit.MILLISECONDS)
+                            .map(x -> request);
+                })
+                .doOnNext(x -> {
+                    LOG.info("[{} - {}]: Application {} stopped.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getMavenArtifactId());
+                    moduleRegistry.markStopped(request);
+                })
+                .onErrorResumeNext(t -> {
+                    if (t instanceof TimeoutException) {
+                        LOG.error("[{} - {}]: Timeout while waiting for application to stop. ", LogConstants.DEPLOY_REQUEST, request.getId());
+                        return Observable.error(new IllegalStateException());
+                    }
+                    return Observable.error(t);
+                })
                 .doOnError(t -> LOG.info("[{} - {}]: Error while Waiting for  module '{}' with applicationId '{}' to stop -> '{}'.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId(), t));
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package nl.jpoint.vertx.deploy.agent.command;
+
+import io.vertx.rxjava.core.Vertx;
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import nl.jpoint.vertx.deploy.agent.util.LogConstants;
+import nl.jpoint.vertx.deploy.agent.util.ModuleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import static rx.Observable.just;
+
+public class UndeployVerticle implements Command<DeployApplicationRequest> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UndeployVerticle.class);
+
+    private final Vertx rxVertx;
+    private final DeployConfig deployConfig;
+    private final ModuleRegistry moduleRegistry;
+
+    public UndeployVerticle(io.vertx.core.Vertx vertx, DeployConfig deployConfig, ModuleRegistry moduleRegistry) {
+        this.rxVertx = new Vertx(vertx);
+        this.deployConfig = deployConfig;
+        this.moduleRegistry = moduleRegistry;
+    }
+
+    @Override
+    public Observable<DeployApplicationRequest> executeAsync(DeployApplicationRequest request) {
+        String deploymentId = moduleRegistry.getDeploymentId(request);
+        String moduleId = request.getMavenArtifactId() + ":" + moduleRegistry.getRunningVersion(request);
+        LOG.info("[{} - {}]: Undeploying module '{}' with deploymentId '{}'.", LogConstants.DEPLOY_REQUEST, request.getId(), moduleId, deploymentId);
+        return rxVertx.rxUndeploy(deploymentId)
+                .toObservable()
+                .flatMap(x -> rxVertx.fileSystem().rxDelete(deployConfig.getRunDir() + moduleId)
+                        .toObservable()
+                        .onErrorResumeNext(t -> just(null)))
+                .map(x -> {
+                    moduleRegistry.markStopped(request);
+                    request.setRunning(false);
+                    return request;
+                })
+                .doOnError(t -> LOG.error("[{} - {}]: Failed to undeploy module '{}', {}", LogConstants.DEPLOY_REQUEST, request.getId(), moduleId, t.getMessage()));
+    }
+}
@@ -0,0 +1,28 @@
+package nl.jpoint.vertx.deploy.agent.handler;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import nl.jpoint.vertx.deploy.agent.service.DeployApplicationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class DrainedHandler implements Handler<RoutingContext> {
+    private static final Logger LOG = LoggerFactory.getLogger(DrainedHandler.class);
+    private final DeployApplicationService deployApplicationService;
+
+    public DrainedHandler(DeployApplicationService deployApplicationService) {
+        this.deployApplicationService = deployApplicationService;
+    }
+
+    @Override
+    public void handle(RoutingContext event) {
+        String moduleId = event.request().getParam("id");
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received drained request {}", event.request().uri());
+        }
+        if (moduleId != null && !moduleId.isEmpty()) {
+            deployApplicationService.addApplicationDrained(moduleId);
+        }
+        event.request().response().end();
+    }
+}
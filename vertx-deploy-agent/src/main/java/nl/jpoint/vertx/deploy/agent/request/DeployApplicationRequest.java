@@ -5,6 +5,11 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import nl.jpoint.vertx.deploy.agent.util.LogConstants;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class DeployApplicationRequest extends ModuleRequest {
 
@@ -15,6 +20,8 @@ public class DeployApplicationRequest extends ModuleRequest {
     private boolean installed = false;
     private boolean testScope = false;
     private String mainService;
+    private List<String> startAfter = Collections.emptyList();
+    private boolean serviceDefaults = false;
 
     @JsonCreator
     public DeployApplicationRequest(@JsonProperty("group_id") final String groupId, @JsonProperty("artifact_id") final String artifactId,
@@ -72,6 +79,13 @@ public class DeployApplicationRequest extends ModuleRequest {
         return this;
     }
 
+    public void withStartAfter(String startAfter) {
+        this.startAfter = startAfter == null ? Collections.emptyList() : Arrays.stream(startAfter.split(","))
+                .map(String::trim)
+                .filter(mavenId -> !mavenId.isEmpty())
+                .collect(Collectors.toList());
+    }
+
     public boolean isTestScope() {
         return this.testScope;
     }
@@ -92,6 +106,21 @@ public class DeployApplicationRequest extends ModuleRequest {
         return mainService;
     }
 
+    public List<String> getStartAfter() {
+        return startAfter;
+    }
+
+    /**
+     * Whether the service defaults are read, they are read once per request for the start order and the start.
+     */
+    public boolean hasServiceDefaults() {
+        return serviceDefaults;
+    }
+
+    public void markServiceDefaults() {
+        this.serviceDefaults = true;
+    }
+
     public boolean isInstalled() {
         return installed;
     }
@@ -26,6 +26,8 @@ public abstract class ModuleRequest {
     private Optional<String> restartCommand;
     private Optional<String> testCommand;
     private Path baseLocation;
+    private Path localPath;
+    private String sha1;
 
 
     ModuleRequest(final String groupId, final String artifactId, final String version, final String classifier, final String type) {
@@ -46,6 +48,10 @@ public abstract class ModuleRequest {
         return artifactId;
     }
 
+    public String getClassifier() {
+        return classifier;
+    }
+
     public String getVersion() {
         return version;
     }
@@ -71,12 +77,27 @@ public abstract class ModuleRequest {
     }
 
     public Path getLocalPath(Path localRepo) {
+        if (localPath != null) {
+            return localPath;
+        }
         if (!Objects.equals(type, "jar")) {
             return localRepo.resolve(getFileName());
         }
         return null;
     }
 
+    public void setLocalPath(Path localPath) {
+        this.localPath = localPath;
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    public void setSha1(String sha1) {
+        this.sha1 = sha1;
+    }
+
     public String getFileName() {
         StringBuilder builder = new StringBuilder()
                 .append(getArtifactId()).append("-");
@@ -1,14 +1,16 @@
 package nl.jpoint.vertx.deploy.agent.service;
 
 import io.vertx.core.Vertx;
+import io.vertx.rxjava.core.file.FileSystem;
 import nl.jpoint.vertx.deploy.agent.DeployConfig;
 import nl.jpoint.vertx.deploy.agent.aws.AwsAutoScalingUtil;
 import nl.jpoint.vertx.deploy.agent.request.*;
+import nl.jpoint.vertx.deploy.agent.util.AetherResolver;
 import nl.jpoint.vertx.deploy.agent.util.AetherUtil;
+import nl.jpoint.vertx.deploy.agent.util.DependencyGraphCache;
 import nl.jpoint.vertx.deploy.agent.util.DeployType;
+import nl.jpoint.vertx.deploy.agent.util.WorkerPool;
 import org.apache.maven.model.Model;
-import org.eclipse.aether.RepositorySystem;
-import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.graph.Dependency;
@@ -16,7 +18,9 @@ import org.eclipse.aether.graph.Exclusion;
 import org.eclipse.aether.resolution.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rx.Observable;
 
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -25,78 +29,138 @@ import static rx.Observable.just;
 
 public class AutoDiscoverDeployService {
     private static final Logger LOG = LoggerFactory.getLogger(AutoDiscoverDeployService.class);
+    private static final String GRAPH_CACHE_SUFFIX = ".graph";
     private final DeployConfig deployConfig;
-    private final AwsAutoScalingUtil awsAutoScalingUtil;
     private final DefaultDeployService defaultDeployService;
-    private final RepositorySystem system;
-    private final RepositorySystemSession session;
+    private final AetherResolver aetherResolver;
+    private final DependencyGraphCache graphCache;
     private final Vertx vertx;
+    private final WorkerPool workerPool;
 
-    public AutoDiscoverDeployService(DeployConfig config, DefaultDeployService defaultDeployService, Vertx vertx) {
+    public AutoDiscoverDeployService(DeployConfig config, DefaultDeployService defaultDeployService, Vertx vertx, WorkerPool workerPool) {
         this.deployConfig = config;
-        this.awsAutoScalingUtil = new AwsAutoScalingUtil(config);
         this.defaultDeployService = defaultDeployService;
         this.vertx = vertx;
-        this.system = AetherUtil.newRepositorySystem();
-        this.session = AetherUtil.newRepositorySystemSession(system);
+        this.workerPool = workerPool;
+        this.aetherResolver = new AetherResolver(config);
+        this.graphCache = new DependencyGraphCache(Paths.get(config.getStatFile() + GRAPH_CACHE_SUFFIX));
     }
 
-    public void autoDiscoverFirstDeploy() {
+    /**
+     * Looks up the deploy tags and resolves the deploy artifacts on the worker pool, then deploys configs and artifacts
+     * in parallel. Applications are started as soon as the configs of their own deploy artifact are extracted.
+     */
+    public Observable<Boolean> autoDiscoverFirstDeploy() {
+        FileSystem fs = new io.vertx.rxjava.core.Vertx(vertx).fileSystem();
+        return fs.rxExists(deployConfig.getStatFile())
+                .toObservable()
+                .flatMap(exists -> {
+                    if (exists) {
+                        LOG.info("Not initial run, skipping auto discover deploy");
+                        return just(Boolean.FALSE);
+                    }
+                    return workerPool.rxExecute("auto-discover", this::discover)
+                            .flatMap(firstDeploy -> deploy(firstDeploy, fs));
+                })
+                .onErrorReturn(t -> {
+                    LOG.error("Error while performing auto discover deploy", t);
+                    return Boolean.FALSE;
+                });
+    }
 
-        if (vertx.fileSystem().existsBlocking(deployConfig.getStatFile())) {
-            LOG.info("Not initial run, skipping auto discover deploy");
-            return;
-        }
+    private FirstDeploy discover() {
+        Map<String, String> tags = new AwsAutoScalingUtil(deployConfig).getDeployTags();
+        List<DeployType> types = deployConfig.isTypedDeploy() ? Arrays.asList(DeployType.APPLICATION, DeployType.ARTIFACT) : Collections.singletonList(DeployType.DEFAULT);
+        final boolean testScope = types.stream()
+                .anyMatch(type -> Boolean.parseBoolean(tags.getOrDefault(type.getScopeTag(), "false")));
+        Map<DeployType, List<Artifact>> dependencies = getDependencies(tags, types, testScope);
 
-        Map<String, String> tags = awsAutoScalingUtil.getDeployTags();
-        final boolean testScope;
-        List<Artifact> dependencies = new ArrayList<>();
-
-        if (deployConfig.isTypedDeploy()) {
-            testScope = Boolean.parseBoolean(tags.getOrDefault(DeployType.APPLICATION.getScopeTag(), "false")) ||
-                    Boolean.parseBoolean(tags.getOrDefault(DeployType.ARTIFACT.getScopeTag(), "false"));
-            dependencies.addAll(getDependenciesForDeployType(tags, DeployType.APPLICATION, testScope));
-            dependencies.addAll(getDependenciesForDeployType(tags, DeployType.ARTIFACT, testScope));
-        } else {
-            testScope = Boolean.parseBoolean(tags.getOrDefault(DeployType.DEFAULT.getScopeTag(), "false"));
-            dependencies.addAll(getDependenciesForDeployType(tags, DeployType.DEFAULT, testScope));
-        }
+        Set<String> applicationConfigs = new HashSet<>();
+        dependencies.forEach((type, artifacts) -> {
+            if (type != DeployType.ARTIFACT) {
+                artifacts.stream()
+                        .filter(a -> ModuleRequest.CONFIG_TYPE.equals(a.getExtension()))
+                        .forEach(a -> applicationConfigs.add(String.join(":", a.getGroupId(), a.getArtifactId(), a.getVersion(), a.getClassifier())));
+            }
+        });
+        DeployRequest request = this.createAutoDiscoverDeployRequest(dependencies.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList()), testScope);
+        Map<Boolean, List<DeployConfigRequest>> configs = request.getConfigs().stream()
+                .collect(Collectors.partitioningBy(c -> applicationConfigs.contains(String.join(":", c.getModuleId(), c.getClassifier() != null ? c.getClassifier() : ""))));
+        return new FirstDeploy(request, configs.get(true), configs.get(false));
+    }
 
-        if (!dependencies.isEmpty()) {
-            DeployRequest request = this.createAutoDiscoverDeployRequest(dependencies, testScope);
-            LOG.info("[{}] : Starting auto discover deploy ", request.getId());
-            just(request)
-                    .flatMap(x -> defaultDeployService.deployConfigs(request.getId(), request.getConfigs()))
-                    .flatMap(x -> defaultDeployService.deployArtifacts(request.getId(), request.getArtifacts()))
-                    .flatMap(x -> defaultDeployService.deployApplications(request.getId(), request.getModules()))
-                    .doOnError(t -> LOG.error("[{}] : Error while performing auto discover deploy {}", request.getId(), t))
-                    .doOnCompleted(() -> {
-                        LOG.info("[{}] : Completed auto discover deploy.", request.getId());
-                        vertx.fileSystem().createFileBlocking(deployConfig.getStatFile());
-                    })
-                    .subscribe();
+    private Observable<Boolean> deploy(FirstDeploy firstDeploy, FileSystem fs) {
+        DeployRequest request = firstDeploy.request;
+        if (request.getConfigs().isEmpty() && request.getArtifacts().isEmpty() && request.getModules().isEmpty()) {
+            return just(Boolean.FALSE);
         }
-
+        LOG.info("[{}] : Starting auto discover deploy ", request.getId());
+        Observable<List<DeployApplicationRequest>> applications = defaultDeployService.deployConfigs(request.getId(), firstDeploy.applicationConfigs)
+                .flatMap(x -> defaultDeployService.deployApplications(request.getId(), request.getModules()));
+        return Observable.zip(applications,
+                defaultDeployService.deployConfigs(request.getId(), firstDeploy.artifactConfigs),
+                defaultDeployService.deployArtifacts(request.getId(), request.getArtifacts()),
+                (modules, configs, artifacts) -> Boolean.TRUE)
+                .doOnError(t -> LOG.error("[{}] : Error while performing auto discover deploy {}", request.getId(), t))
+                .flatMap(x -> fs.rxCreateFile(deployConfig.getStatFile()).toObservable())
+                .map(x -> {
+                    LOG.info("[{}] : Completed auto discover deploy.", request.getId());
+                    return Boolean.TRUE;
+                });
     }
 
-    private List<Artifact> getDependenciesForDeployType(Map<String, String> tags, DeployType type, boolean testScope) {
-        if (!tags.containsKey(type.getLatestRequestTag()) || tags.get(type.getLatestRequestTag()) == null || tags.get(type.getLatestRequestTag()).isEmpty()) {
-            LOG.info("No tag {} in auto scaling group.", type.getLatestRequestTag());
-            return new ArrayList<>();
+    /**
+     * Dependencies of the deploy artifact of each type, from the graph cache when the same release was resolved before.
+     * Deploy artifacts that are not cached are resolved in one request.
+     */
+    private Map<DeployType, List<Artifact>> getDependencies(Map<String, String> tags, List<DeployType> types, boolean testScope) {
+        Map<DeployType, List<Artifact>> dependencies = new LinkedHashMap<>();
+        Map<DeployType, Artifact> unresolved = new LinkedHashMap<>();
+        for (DeployType type : types) {
+            String coordinates = tags.get(type.getLatestRequestTag());
+            if (coordinates == null || coordinates.isEmpty()) {
+                LOG.info("No tag {} in auto scaling group.", type.getLatestRequestTag());
+                continue;
+            }
+            Optional<List<Artifact>> cached = graphCache.get(graphKey(tags, type, testScope));
+            if (cached.isPresent()) {
+                LOG.info("Using cached dependencies of deploy artifact '{}'.", coordinates);
+                dependencies.put(type, cached.get());
+            } else {
+                dependencies.put(type, new ArrayList<>());
+                unresolved.put(type, new DefaultArtifact(coordinates));
+            }
         }
-        Artifact deployArtifact = getDeployArtifact(tags.get(type.getLatestRequestTag()));
-        List<Artifact> dependencies = new ArrayList<>();
-        if (deployArtifact != null) {
-            dependencies.addAll(getDeployDependencies(deployArtifact,
+
+        List<ArtifactResult> results = getDeployArtifacts(new ArrayList<>(unresolved.values()));
+        Iterator<ArtifactResult> result = results.iterator();
+        unresolved.forEach((type, artifact) -> {
+            ArtifactResult artifactResult = result.hasNext() ? result.next() : null;
+            if (artifactResult == null || !artifactResult.isResolved()) {
+                LOG.error("Unable to resolve deploy artifact '{}', unable to auto-discover ", artifact);
+                return;
+            }
+            List<Artifact> typeDependencies = getDeployDependencies(artifactResult.getArtifact(),
                     getExclusions(tags.getOrDefault(type.getExclusionTag(), "")),
                     testScope,
-                    getProperties(tags.getOrDefault(type.getPropertiesTag(), "")), type));
-            dependencies.forEach(a -> LOG.trace("{}:{}:{}:{}", a.getGroupId(), a.getArtifactId(), a.getClassifier(), a.getVersion()));
-        }
+                    getProperties(tags.getOrDefault(type.getPropertiesTag(), "")), type);
+            typeDependencies.forEach(a -> LOG.trace("{}:{}:{}:{}", a.getGroupId(), a.getArtifactId(), a.getClassifier(), a.getVersion()));
+            if (!typeDependencies.isEmpty()) {
+                graphCache.put(graphKey(tags, type, testScope), typeDependencies);
+            }
+            dependencies.get(type).addAll(typeDependencies);
+        });
 
         return dependencies;
     }
 
+    private String graphKey(Map<String, String> tags, DeployType type, boolean testScope) {
+        return DependencyGraphCache.key(tags.get(type.getLatestRequestTag()), type, testScope,
+                tags.getOrDefault(type.getExclusionTag(), ""), tags.getOrDefault(type.getPropertiesTag(), ""));
+    }
+
     private DeployRequest createAutoDiscoverDeployRequest(List<Artifact> dependencies, boolean testScope) {
         List<DeployConfigRequest> configs = dependencies.stream()
                 .filter(a -> ModuleRequest.CONFIG_TYPE.equals(a.getExtension()))
@@ -117,37 +181,32 @@ public class AutoDiscoverDeployService {
     }
 
 
-    private Artifact getDeployArtifact(String mavenCoords) {
-        Artifact artifact = new DefaultArtifact(mavenCoords);
-        ArtifactRequest artifactRequest = new ArtifactRequest();
-        artifactRequest.setArtifact(artifact);
-        artifactRequest.setRepositories(AetherUtil.newRepositories(deployConfig));
+    private List<ArtifactResult> getDeployArtifacts(List<Artifact> artifacts) {
+        if (artifacts.isEmpty()) {
+            return Collections.emptyList();
+        }
         try {
-            ArtifactResult artifactResult = system.resolveArtifact(session, artifactRequest);
-            return artifactResult.getArtifact();
+            return aetherResolver.resolveArtifacts(artifacts);
         } catch (ArtifactResolutionException e) {
-            LOG.error("Unable to resolve deploy artifact '{}', unable to auto-discover ", mavenCoords, e);
+            LOG.error("Unable to resolve deploy artifacts {}", artifacts, e);
+            return e.getResults();
         }
-        return null;
     }
 
     private List<Artifact> getDeployDependencies(Artifact artifact, List<Exclusion> exclusions, boolean testScope, Map<String, String> properties, DeployType type) {
-        ArtifactDescriptorRequest descriptorRequest = new ArtifactDescriptorRequest();
-        descriptorRequest.setRepositories(AetherUtil.newRepositories(deployConfig));
-        descriptorRequest.setArtifact(artifact);
-        Model model = AetherUtil.readPom(artifact);
-        if (model == null) {
+        Model model = properties.isEmpty() ? null : AetherUtil.readPom(artifact);
+        if (!properties.isEmpty() && model == null) {
             throw new IllegalStateException("Unable to read POM for " + artifact.getFile());
         }
         try {
-            ArtifactDescriptorResult descriptorResult = system.readArtifactDescriptor(session, descriptorRequest);
+            ArtifactDescriptorResult descriptorResult = aetherResolver.readArtifactDescriptor(artifact);
 
             return descriptorResult.getDependencies().stream()
                     .filter(d -> type == DeployType.DEFAULT || (type == DeployType.APPLICATION && !d.getArtifact().getExtension().equals("zip")) || (type == DeployType.ARTIFACT && !d.getArtifact().getExtension().equals("jar")))
                     .filter(d -> "compile".equalsIgnoreCase(d.getScope()) || ("test".equalsIgnoreCase(d.getScope()) && testScope))
                     .filter(d -> !exclusions.contains(new Exclusion(d.getArtifact().getGroupId(), d.getArtifact().getArtifactId(), null, null)))
                     .map(Dependency::getArtifact)
-                    .map(d -> this.checkWithModel(model, d, properties))
+                    .map(d -> model == null ? d : this.checkWithModel(model, d, properties))
                     .collect(Collectors.toList());
 
         } catch (ArtifactDescriptorException e) {
@@ -194,4 +253,15 @@ public class AutoDiscoverDeployService {
         return new Exclusion(ex[0], ex[1], null, null);
     }
 
-}
\ No newline at end of file
+    private static final class FirstDeploy {
+        private final DeployRequest request;
+        private final List<DeployConfigRequest> applicationConfigs;
+        private final List<DeployConfigRequest> artifactConfigs;
+
+        private FirstDeploy(DeployRequest request, List<DeployConfigRequest> applicationConfigs, List<DeployConfigRequest> artifactConfigs) {
+            this.request = request;
+            this.applicationConfigs = applicationConfigs;
+            this.artifactConfigs = artifactConfigs;
+        }
+    }
+}
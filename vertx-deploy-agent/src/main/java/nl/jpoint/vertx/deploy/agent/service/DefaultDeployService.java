@@ -55,8 +55,13 @@ public class DefaultDeployService {
     }
 
     public Observable<List<DeployApplicationRequest>> deployApplications(UUID id, List<DeployApplicationRequest> applications) {
-        return Observable.from(applications)
-                .flatMap(applicationDeployService::deployAsync)
+        int parallelism = applicationDeployService.getConfig().getApplicationParallelism();
+        return applicationDeployService.startOrder(applications)
+                .flatMapIterable(stages -> stages)
+                .concatMap(stage -> Observable.from(stage)
+                        .flatMap(applicationDeployService::deployAsync, parallelism)
+                        .toList())
+                .flatMapIterable(stage -> stage)
                 .toList()
                 .flatMap(x -> {
                     LOG.info("[{} - {}]: Done extracting all applications.", LogConstants.DEPLOY_REQUEST, id);
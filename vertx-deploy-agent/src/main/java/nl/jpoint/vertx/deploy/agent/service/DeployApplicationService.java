@@ -1,22 +1,41 @@
 package nl.jpoint.vertx.deploy.agent.service;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.rx.java.RxHelper;
+import io.vertx.rxjava.core.buffer.Buffer;
 import io.vertx.rxjava.core.file.FileSystem;
 import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.command.Command;
+import nl.jpoint.vertx.deploy.agent.command.DeployVerticle;
 import nl.jpoint.vertx.deploy.agent.command.RunApplication;
 import nl.jpoint.vertx.deploy.agent.command.StopApplication;
+import nl.jpoint.vertx.deploy.agent.command.UndeployVerticle;
 import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
 import nl.jpoint.vertx.deploy.agent.request.DeployRequest;
+import nl.jpoint.vertx.deploy.agent.util.ArtifactCache;
+import nl.jpoint.vertx.deploy.agent.util.CdsArchive;
+import nl.jpoint.vertx.deploy.agent.util.DrainCoordinator;
+import nl.jpoint.vertx.deploy.agent.util.ClasspathResolver;
+import nl.jpoint.vertx.deploy.agent.util.LaunchMode;
 import nl.jpoint.vertx.deploy.agent.util.LogConstants;
+import nl.jpoint.vertx.deploy.agent.util.ModuleRegistry;
 import nl.jpoint.vertx.deploy.agent.util.ProcessUtils;
+import nl.jpoint.vertx.deploy.agent.util.StartOrder;
+import nl.jpoint.vertx.deploy.agent.util.WorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.subjects.AsyncSubject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 
 import static rx.Observable.just;
@@ -25,12 +44,25 @@ public class DeployApplicationService implements DeployService<DeployApplication
     private static final Logger LOG = LoggerFactory.getLogger(DeployApplicationService.class);
     private final DeployConfig config;
     private final Vertx vertx;
+    private final ArtifactCache artifactCache;
+    private final ModuleRegistry moduleRegistry;
+    private final ClasspathResolver classpathResolver;
+    private final CdsArchive cdsArchive;
+    private final WorkerPool workerPool;
+    private final DrainCoordinator drainCoordinator;
     private final List<String> deployedApplicationsSuccess = new ArrayList<>();
     private final Map<String, Object> deployedApplicationsFailed = new HashMap<>();
+    private final Map<String, AsyncSubject<String>> pendingReady = new ConcurrentHashMap<>();
 
-    public DeployApplicationService(DeployConfig config, Vertx vertx) {
+    public DeployApplicationService(DeployConfig config, Vertx vertx, ArtifactCache artifactCache, ModuleRegistry moduleRegistry, WorkerPool workerPool) {
         this.config = config;
         this.vertx = vertx;
+        this.artifactCache = artifactCache;
+        this.moduleRegistry = moduleRegistry;
+        this.workerPool = workerPool;
+        this.drainCoordinator = new DrainCoordinator(vertx, config);
+        this.classpathResolver = config.getApplicationLaunchMode() == LaunchMode.CLASSPATH ? new ClasspathResolver(config) : null;
+        this.cdsArchive = config.isApplicationCds() ? new CdsArchive(config, moduleRegistry) : null;
     }
 
     @Override
@@ -38,29 +70,52 @@ public class DeployApplicationService implements DeployService<DeployApplication
         return resolveSnapShotVersion(deployApplicationRequest)
                 .flatMap(this::checkModuleState)
                 .flatMap(this::stopApplication)
+                .flatMap(this::evictCdsArchives)
                 .flatMap(this::startApplication)
-                .flatMap(this::registerApplication);
+                .flatMap(this::registerApplication)
+                .flatMap(this::waitForReady);
     }
 
     private Observable<DeployApplicationRequest> checkModuleState(DeployApplicationRequest deployApplicationRequest) {
-        new ProcessUtils(config).checkModuleRunning(deployApplicationRequest);
-        LOG.info("[{} - {}]: Module '{}' running : {}, sameVersion : {}.", LogConstants.DEPLOY_REQUEST, deployApplicationRequest.getId(), deployApplicationRequest.getModuleId(), deployApplicationRequest.isInstalled(), deployApplicationRequest.isInstalled());
-        return just(deployApplicationRequest);
+        return moduleRegistry.checkModuleRunning(deployApplicationRequest)
+                .doOnNext(request -> LOG.info("[{} - {}]: Module '{}' running : {}, sameVersion : {}.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId(), request.isRunning(), request.isInstalled()));
     }
 
     private Observable<DeployApplicationRequest> stopApplication(DeployApplicationRequest deployApplicationRequest) {
         if (deployApplicationRequest.isRunning() && !deployApplicationRequest.isInstalled()) {
-            StopApplication stopApplicationCommand = new StopApplication(vertx, config);
-            return stopApplicationCommand.executeAsync(deployApplicationRequest);
+            return stopCommand(deployApplicationRequest).executeAsync(deployApplicationRequest);
         } else {
             return just(deployApplicationRequest);
         }
     }
 
+    private Observable<DeployApplicationRequest> evictCdsArchives(DeployApplicationRequest deployApplicationRequest) {
+        if (cdsArchive == null || deployApplicationRequest.isRunning()) {
+            return just(deployApplicationRequest);
+        }
+        return workerPool.rxExecute("evict cds " + deployApplicationRequest.getModuleId(), () -> {
+            cdsArchive.evict(deployApplicationRequest);
+            return deployApplicationRequest;
+        });
+    }
+
+    private Command<DeployApplicationRequest> stopCommand(DeployApplicationRequest deployApplicationRequest) {
+        if (moduleRegistry.getDeploymentId(deployApplicationRequest) != null) {
+            return new UndeployVerticle(vertx, config, moduleRegistry);
+        }
+        return new StopApplication(vertx, config, moduleRegistry, drainCoordinator);
+    }
+
     private Observable<DeployApplicationRequest> startApplication(DeployApplicationRequest deployApplicationRequest) {
         if (!deployApplicationRequest.isRunning()) {
-            RunApplication runModCommand = new RunApplication(vertx, config);
-            return runModCommand.executeAsync(deployApplicationRequest);
+            if (config.getApplicationReadyTimeout() > 0) {
+                pendingReady.put(deployApplicationRequest.getModuleId(), AsyncSubject.create());
+            }
+            Command<DeployApplicationRequest> runModCommand = config.getApplicationLaunchMode() == LaunchMode.EMBEDDED
+                    ? new DeployVerticle(vertx, config, moduleRegistry)
+                    : new RunApplication(vertx, config, classpathResolver, cdsArchive, workerPool);
+            return runModCommand.executeAsync(deployApplicationRequest)
+                    .doOnError(t -> pendingReady.remove(deployApplicationRequest.getModuleId()));
         } else {
             return just(deployApplicationRequest);
         }
@@ -70,17 +125,38 @@ public class DeployApplicationService implements DeployService<DeployApplication
     private Observable<DeployApplicationRequest> registerApplication(DeployApplicationRequest
                                                                              deployApplicationRequest) {
         io.vertx.rxjava.core.Vertx rxVertx = new io.vertx.rxjava.core.Vertx(vertx);
-        return rxVertx.fileSystem()
-                .rxExists(config.getRunDir() + deployApplicationRequest.getModuleId())
-                .toObservable()
-                .flatMap(exists -> {
-                    if (!exists) {
-                        return rxVertx.fileSystem().rxCreateFile(config.getRunDir() + deployApplicationRequest.getModuleId())
-                                .toObservable()
-                                .flatMap(x -> just(deployApplicationRequest));
-                    } else {
-                        return just(deployApplicationRequest);
+        String deploymentId = moduleRegistry.getDeploymentId(deployApplicationRequest);
+        Observable<JsonObject> runInfo = deploymentId != null ? just(new JsonObject().put("deploymentId", deploymentId)) : moduleRegistry.rxMarkStarted(deployApplicationRequest)
+                .map(handle -> handle.map(ProcessUtils::toRunInfo).orElse(new JsonObject()));
+        return runInfo
+                .flatMap(info -> rxVertx.fileSystem()
+                        .rxWriteFile(config.getRunDir() + deployApplicationRequest.getModuleId(), Buffer.buffer(info.encode()))
+                        .toObservable())
+                .flatMap(x -> just(deployApplicationRequest));
+    }
+
+    /**
+     * Completes once the started application reported its status through /deploy/update, or fails after
+     * application.ready.timeout seconds.
+     */
+    private Observable<DeployApplicationRequest> waitForReady(DeployApplicationRequest deployApplicationRequest) {
+        AsyncSubject<String> ready = pendingReady.get(deployApplicationRequest.getModuleId());
+        if (ready == null) {
+            return just(deployApplicationRequest);
+        }
+        LOG.info("[{} - {}]: Waiting for module '{}' to report ready.", LogConstants.DEPLOY_REQUEST, deployApplicationRequest.getId(), deployApplicationRequest.getModuleId());
+        return ready.timeout(config.getApplicationReadyTimeout(), TimeUnit.SECONDS, RxHelper.scheduler(vertx))
+                .onErrorResumeNext(t -> {
+                    if (t instanceof TimeoutException) {
+                        LOG.error("[{} - {}]: Timeout while waiting for module '{}' to report ready.", LogConstants.DEPLOY_REQUEST, deployApplicationRequest.getId(), deployApplicationRequest.getModuleId());
+                        return Observable.error(new IllegalStateException("Timeout while waiting for module " + deployApplicationRequest.getModuleId() + " to report ready"));
                     }
+                    return Observable.error(t);
+                })
+                .doOnTerminate(() -> pendingReady.remove(deployApplicationRequest.getModuleId(), ready))
+                .map(x -> {
+                    LOG.info("[{} - {}]: Module '{}' reported ready.", LogConstants.DEPLOY_REQUEST, deployApplicationRequest.getId(), deployApplicationRequest.getModuleId());
+                    return deployApplicationRequest;
                 });
     }
 
@@ -94,23 +170,55 @@ public class DeployApplicationService implements DeployService<DeployApplication
         return vertx;
     }
 
+    @Override
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    @Override
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
     @Override
     public String getLogType() {
         return LogConstants.DEPLOY_REQUEST;
     }
 
+    /**
+     * Reads the service defaults of the applications and groups them in stages that can be started in parallel. The
+     * defaults are kept on the requests, so starting them does not read them again.
+     */
+    Observable<List<List<DeployApplicationRequest>>> startOrder(List<DeployApplicationRequest> applications) {
+        RunApplication runApplication = new RunApplication(vertx, config);
+        return Observable.from(applications)
+                .concatMap(runApplication::readServiceDefaults)
+                .toList()
+                .map(StartOrder::stages);
+    }
+
     Observable<Boolean> stopContainer() {
         LOG.info("[{}]: Stopping all running modules", LogConstants.INVOKE_CONTAINER);
-        return Observable.from(new ProcessUtils(config).listInstalledAndRunningModules().entrySet())
-                .concatMap(entry -> {
-                    StopApplication stopApplication = new StopApplication(vertx, config);
+        return moduleRegistry.rxReconcile()
+                .flatMapIterable(Map::entrySet)
+                .map(entry -> {
                     String[] mavenIds = entry.getKey().split(":", 2);
                     DeployApplicationRequest request = new DeployApplicationRequest(mavenIds[0], mavenIds[1], entry.getValue(), null, "jar");
                     request.setRunning(false);
                     request.setInstalled(false);
-                    return stopApplication.executeAsync(request);
+                    return request;
                 })
                 .toList()
+                .flatMap(this::startOrder)
+                .flatMapIterable(stages -> {
+                    List<List<DeployApplicationRequest>> reversed = new ArrayList<>(stages);
+                    Collections.reverse(reversed);
+                    return reversed;
+                })
+                .concatMap(stage -> Observable.from(stage)
+                        .flatMap(request -> stopCommand(request).executeAsync(request), config.getApplicationParallelism())
+                        .toList())
+                .toList()
                 .flatMap(x -> Observable.just(true));
     }
 
@@ -122,15 +230,14 @@ public class DeployApplicationService implements DeployService<DeployApplication
     }
 
     public Observable<Boolean> cleanup() {
-        List<String> runningApplications = new ProcessUtils(config).listModules();
         FileSystem fs = new io.vertx.rxjava.core.Vertx(vertx).fileSystem();
 
-
-        return fs.rxReadDir(config.getRunDir())
-                .toObservable()
-                .flatMapIterable(x -> x)
-                .flatMap(s -> just(Pattern.compile("/").splitAsStream(s).reduce((a, b) -> b).orElse("")))
-                .filter(s -> !s.isEmpty() && !runningApplications.contains(s))
+        return moduleRegistry.rxListModules()
+                .flatMap(runningApplications -> fs.rxReadDir(config.getRunDir())
+                        .toObservable()
+                        .flatMapIterable(x -> x)
+                        .flatMap(s -> just(Pattern.compile("/").splitAsStream(s).reduce((a, b) -> b).orElse("")))
+                        .filter(s -> !s.isEmpty() && !s.startsWith(".") && !runningApplications.contains(s)))
                 .flatMap(file -> fs.rxDelete(config.getRunDir() + file).toObservable())
                 .toList()
                 .flatMap(x -> just(Boolean.TRUE).doOnError(t -> LOG.error("error")))
@@ -140,14 +247,35 @@ public class DeployApplicationService implements DeployService<DeployApplication
                 });
     }
 
+    public void addApplicationDrained(String moduleId) {
+        drainCoordinator.drained(moduleId);
+    }
+
     public void addApplicationDeployResult(boolean succeeded, String message, String deploymentId) {
+        if (succeeded && cdsArchive != null) {
+            workerPool.rxExecute("confirm cds " + deploymentId, () -> {
+                cdsArchive.confirm(deploymentId);
+                return deploymentId;
+            }).subscribe(x -> {
+            }, t -> LOG.warn("Unable to confirm class data sharing archive for module '{}' : {}", deploymentId, t.getMessage()));
+        }
         if (succeeded && !deployedApplicationsSuccess.contains(deploymentId)) {
             deployedApplicationsSuccess.add(deploymentId);
         }
         if (!succeeded && !deployedApplicationsFailed.containsKey(deploymentId)) {
             deployedApplicationsFailed.put(deploymentId, message != null ? message : "No reason provided by application.");
         }
-
+        pendingReady.forEach((moduleId, ready) -> {
+            if (!moduleId.equals(deploymentId) && !moduleId.startsWith(deploymentId + ":")) {
+                return;
+            }
+            if (succeeded) {
+                ready.onNext(deploymentId);
+                ready.onCompleted();
+            } else {
+                ready.onError(new IllegalStateException("Module " + deploymentId + " reported an error : " + (message != null ? message : "No reason provided by application.")));
+            }
+        });
     }
 
     public List<String> getDeployedApplicationsSuccess() {
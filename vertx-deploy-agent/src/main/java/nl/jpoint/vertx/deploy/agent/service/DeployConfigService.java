@@ -4,7 +4,9 @@ import io.vertx.core.Vertx;
 import nl.jpoint.vertx.deploy.agent.DeployConfig;
 import nl.jpoint.vertx.deploy.agent.command.RunConsoleCommand;
 import nl.jpoint.vertx.deploy.agent.request.DeployConfigRequest;
+import nl.jpoint.vertx.deploy.agent.util.ArtifactCache;
 import nl.jpoint.vertx.deploy.agent.util.LogConstants;
+import nl.jpoint.vertx.deploy.agent.util.WorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
@@ -16,21 +18,25 @@ public class DeployConfigService implements DeployService<DeployConfigRequest, B
 
     private final Vertx vertx;
     private final DeployConfig config;
+    private final ArtifactCache artifactCache;
+    private final WorkerPool workerPool;
 
-    public DeployConfigService(Vertx vertx, DeployConfig config) {
+    public DeployConfigService(Vertx vertx, DeployConfig config, ArtifactCache artifactCache, WorkerPool workerPool) {
         this.vertx = vertx;
         this.config = config;
+        this.artifactCache = artifactCache;
+        this.workerPool = workerPool;
     }
 
     @Override
     public Observable<Boolean> deployAsync(DeployConfigRequest deployRequest) {
         return resolveSnapShotVersion(deployRequest)
                 .flatMap(this::downloadArtifact)
-                .flatMap(this::parseArtifactContext)
                 .flatMap(this::extractArtifact)
                 .flatMap(this::runTestCommand)
                 .flatMap(this::runRestartCommand)
                 .map(DeployConfigRequest::restart)
+                .doAfterTerminate(() -> artifactCache.release(deployRequest))
                 .doOnCompleted(() -> LOG.info("[{} - {}]: Done extracting config {}.", deployRequest.getLogName(), deployRequest.getId(), deployRequest.getModuleId()));
 
     }
@@ -45,6 +51,16 @@ public class DeployConfigService implements DeployService<DeployConfigRequest, B
         return vertx;
     }
 
+    @Override
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    @Override
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
     @Override
     public String getLogType() {
         return LogConstants.DEPLOY_CONFIG_REQUEST;
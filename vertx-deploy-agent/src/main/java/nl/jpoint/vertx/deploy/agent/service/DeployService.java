@@ -6,7 +6,9 @@ import nl.jpoint.vertx.deploy.agent.command.DownloadHttpArtifact;
 import nl.jpoint.vertx.deploy.agent.command.ExtractArtifact;
 import nl.jpoint.vertx.deploy.agent.command.ResolveSnapshotVersion;
 import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
-import nl.jpoint.vertx.deploy.agent.util.ArtifactContextUtil;
+import nl.jpoint.vertx.deploy.agent.util.ArtifactArchive;
+import nl.jpoint.vertx.deploy.agent.util.ArtifactCache;
+import nl.jpoint.vertx.deploy.agent.util.WorkerPool;
 import rx.Observable;
 
 import static rx.Observable.just;
@@ -19,11 +21,15 @@ interface DeployService<T extends ModuleRequest, R> {
 
     Vertx getVertx();
 
+    ArtifactCache getArtifactCache();
+
+    WorkerPool getWorkerPool();
+
     String getLogType();
 
     default Observable<T> resolveSnapShotVersion(T moduleRequest) {
         if (moduleRequest.isSnapshot() && getConfig().isMavenRemote()) {
-            ResolveSnapshotVersion<T> resolveVersion = new ResolveSnapshotVersion<>(getConfig(), getVertx());
+            ResolveSnapshotVersion<T> resolveVersion = new ResolveSnapshotVersion<>(getArtifactCache().getMetadataCache());
             return resolveVersion.executeAsync(moduleRequest);
         } else {
             return just(moduleRequest);
@@ -31,23 +37,24 @@ interface DeployService<T extends ModuleRequest, R> {
     }
 
     default Observable<T> downloadArtifact(T moduleRequest) {
-        DownloadHttpArtifact<T> downloadArtifact = new DownloadHttpArtifact<>(getConfig(), getLogType());
+        DownloadHttpArtifact<T> downloadArtifact = new DownloadHttpArtifact<>(getArtifactCache(), getLogType());
         return downloadArtifact.executeAsync(moduleRequest);
     }
 
 
-    default Observable<T> parseArtifactContext(T moduleRequest) {
-        ArtifactContextUtil artifactContextUtil = new ArtifactContextUtil(moduleRequest, getConfig().getArtifactRepo().resolve(moduleRequest.getFileName()));
-        moduleRequest.setRestartCommand(artifactContextUtil.getRestartCommand());
-        moduleRequest.setTestCommand(artifactContextUtil.getTestCommand());
-        moduleRequest.setBaseLocation(artifactContextUtil.getBaseLocation());
-        return just(moduleRequest);
-    }
-
+    /**
+     * Opens the artifact once on the worker pool, reads the artifact context and extracts it from the same archive.
+     * Artifacts are extracted in parallel, artifacts with the same base location one after the other.
+     */
     default Observable<T> extractArtifact(T moduleRequest) {
-        ExtractArtifact<T> extractConfig = new ExtractArtifact<>(getVertx(), getConfig(), moduleRequest.getBaseLocation());
-        return extractConfig.executeAsync(moduleRequest);
+        return getWorkerPool().rxExecute("extract " + moduleRequest.getModuleId(), () -> {
+            try (ArtifactArchive archive = ArtifactArchive.open(moduleRequest, moduleRequest.getLocalPath(getConfig().getArtifactRepo()))) {
+                if (!ModuleRequest.GZIP_TYPE.equals(moduleRequest.getType())) {
+                    // tar.gz artifacts are streamed once, the context is read while extracting
+                    ExtractArtifact.applyArtifactContext(moduleRequest, archive.getArtifactContext());
+                }
+                return new ExtractArtifact<T>(getVertx(), getConfig(), moduleRequest.getBaseLocation(), getWorkerPool()).extract(moduleRequest, archive);
+            }
+        });
     }
-
-
 }
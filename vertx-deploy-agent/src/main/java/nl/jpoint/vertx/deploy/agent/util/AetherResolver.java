@@ -0,0 +1,67 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.resolution.DependencyResolutionException;
+import org.eclipse.aether.resolution.DependencyResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Repository system, session and remote repositories that are created once and reused for every resolve. Artifacts
+ * and metadata of a single request are downloaded in parallel by the basic connector.
+ */
+public class AetherResolver {
+    private static final String CONNECTOR_THREADS = "aether.connector.basic.threads";
+    private static final String METADATA_THREADS = "aether.metadataResolver.threads";
+
+    private final RepositorySystem system;
+    private final DefaultRepositorySystemSession session;
+    private final List<RemoteRepository> repositories;
+
+    public AetherResolver(DeployConfig config) {
+        this.system = AetherUtil.newRepositorySystem();
+        this.session = AetherUtil.newRepositorySystemSession(system);
+        this.session.setUpdatePolicy(config.getRemoteRepoPolicy());
+        this.session.setConfigProperty(CONNECTOR_THREADS, config.getArtifactDownloadParallelism());
+        this.session.setConfigProperty(METADATA_THREADS, config.getArtifactDownloadParallelism());
+        this.repositories = Collections.unmodifiableList(AetherUtil.newRepositories(config));
+    }
+
+    public List<RemoteRepository> getRepositories() {
+        return repositories;
+    }
+
+    public Artifact resolveArtifact(Artifact artifact) throws ArtifactResolutionException {
+        return system.resolveArtifact(session, new ArtifactRequest(artifact, repositories, null)).getArtifact();
+    }
+
+    /**
+     * Resolves all artifacts in one request, so missing artifacts are downloaded in parallel.
+     */
+    public List<ArtifactResult> resolveArtifacts(List<Artifact> artifacts) throws ArtifactResolutionException {
+        return system.resolveArtifacts(session, artifacts.stream()
+                .map(artifact -> new ArtifactRequest(artifact, repositories, null))
+                .collect(Collectors.toList()));
+    }
+
+    public ArtifactDescriptorResult readArtifactDescriptor(Artifact artifact) throws ArtifactDescriptorException {
+        return system.readArtifactDescriptor(session, new ArtifactDescriptorRequest(artifact, repositories, null));
+    }
+
+    public DependencyResult resolveDependencies(DependencyRequest request) throws DependencyResolutionException {
+        return system.resolveDependencies(session, request);
+    }
+}
@@ -4,6 +4,7 @@ package nl.jpoint.vertx.deploy.agent.util;
 import nl.jpoint.vertx.deploy.agent.DeployConfig;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.http.client.utils.URIBuilder;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.eclipse.aether.DefaultRepositorySystemSession;
@@ -23,6 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -71,6 +73,19 @@ public class AetherUtil {
         }
     }
 
+    /**
+     * The maven repo as url for the maven verticle factory, with the http credentials as user info.
+     */
+    public static String remoteRepoUrl(DeployConfig deployConfig) {
+        URI remoteRepo = deployConfig.getNexusUrl();
+        if (remoteRepo != null && deployConfig.isHttpAuthentication()) {
+            URIBuilder builder = new URIBuilder(remoteRepo);
+            builder.setUserInfo(deployConfig.getHttpAuthUser() + ":" + deployConfig.getHttpAuthPassword());
+            return builder.toString();
+        }
+        return deployConfig.getNexusUrl().toString();
+    }
+
     private static RemoteRepository newNexusRepo(DeployConfig deployConfig) {
         if (deployConfig.getNexusUrl() == null) {
             return null;
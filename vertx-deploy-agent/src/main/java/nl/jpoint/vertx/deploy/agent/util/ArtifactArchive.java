@@ -0,0 +1,92 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static nl.jpoint.vertx.deploy.agent.util.ArtifactContextUtil.ARTIFACT_CONTEXT;
+
+/**
+ * A downloaded artifact that is opened once for inspection and extraction. Zip archives keep their central directory
+ * open so the artifact_context.xml is read without a scan, tar.gz archives are streamed once by the extractor which
+ * reads the artifact_context.xml on the way.
+ */
+public class ArtifactArchive implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactArchive.class);
+
+    private final ModuleRequest request;
+    private final Path path;
+    private final ZipFile zipFile;
+    private byte[] artifactContext;
+
+    private ArtifactArchive(ModuleRequest request, Path path, ZipFile zipFile) {
+        this.request = request;
+        this.path = path;
+        this.zipFile = zipFile;
+    }
+
+    public static ArtifactArchive open(ModuleRequest request, Path path) {
+        if (ModuleRequest.GZIP_TYPE.equals(request.getType())) {
+            return new ArtifactArchive(request, path, null);
+        }
+        try {
+            return new ArtifactArchive(request, path, new ZipFile(path.toFile()));
+        } catch (IOException e) {
+            LOG.error("[{} - {}]: Unable to open artifact {} -> {}.", request.getLogName(), request.getId(), path, e.getMessage());
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public ZipFile getZipFile() {
+        if (zipFile == null) {
+            throw new IllegalStateException("Artifact " + path + " is not a zip archive");
+        }
+        return zipFile;
+    }
+
+    /**
+     * The artifact_context.xml of a zip archive, tar.gz archives are not read twice and throw.
+     */
+    public byte[] getArtifactContext() {
+        if (artifactContext == null) {
+            artifactContext = readZipEntry();
+        }
+        return artifactContext;
+    }
+
+    private byte[] readZipEntry() {
+        ZipEntry entry = getZipFile().getEntry(ARTIFACT_CONTEXT);
+        if (entry == null) {
+            LOG.error("[{} - {}] : No 'artifact_context.xml' in archive. Failing build.", request.getLogName(), request.getId());
+            throw new IllegalStateException("Missing artifact_context.xml in " + path);
+        }
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            LOG.error("[{} - {}] : Unable to read 'artifact_context.xml' from archive. Failing build : {}", request.getLogName(), request.getId(), e.getMessage());
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (zipFile != null) {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                LOG.warn("Error while closing artifact {} -> {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import io.vertx.core.json.JsonObject;
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class ArtifactCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactCache.class);
+
+    private static final String CACHE_DIR = ".cache";
+    private static final String INDEX_FILE = "index.json";
+    private static final String ARTIFACTS = "artifacts";
+    private static final String INSTALLED = "installed";
+    private static final String FILE = "file";
+    private static final String SHA1 = "sha1";
+    private static final String SHA256 = "sha256";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String SIZE = "size";
+    private static final String LAST_ACCESS = "lastAccess";
+    private static final String VERSION = "version";
+    private static final String BASE_LOCATION = "baseLocation";
+
+    private final DeployConfig config;
+    private final RepositoryHttpClient httpClient;
+    private final MetadataCache metadataCache;
+    private final Path cacheDir;
+    private final Path indexFile;
+    private final long maxSize;
+    private final Map<String, Integer> pinned = new HashMap<>();
+    private final Set<ModuleRequest> pinnedBy = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<String, Set<String>> replaced = new HashMap<>();
+    private JsonObject index;
+
+    public ArtifactCache(DeployConfig config, RepositoryHttpClient httpClient) {
+        this.config = config;
+        this.httpClient = httpClient;
+        this.metadataCache = new MetadataCache(config, httpClient);
+        this.cacheDir = config.getArtifactRepo().resolve(CACHE_DIR);
+        this.indexFile = cacheDir.resolve(INDEX_FILE);
+        this.maxSize = config.getArtifactCacheMaxSize() * 1024L * 1024L;
+        this.index = readIndex();
+    }
+
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    public <T extends ModuleRequest> Observable<T> fetch(T request) {
+        return httpClient.rxExecute(() -> fetchBlocking(request))
+                .map(path -> request);
+    }
+
+    private Path fetchBlocking(ModuleRequest request) throws IOException {
+        final String key = cacheKey(request);
+        final URI location = config.getNexusUrl().resolve(config.getNexusUrl().getPath() + "/" + request.getRemoteLocation());
+        final String expectedSha1 = readChecksum(httpClient.getString(URI.create(location.toString() + ".sha1")));
+
+        JsonObject entry;
+        synchronized (this) {
+            if (pinnedBy.add(request)) {
+                pinned.merge(key, 1, Integer::sum);
+            }
+            entry = artifacts().getJsonObject(key);
+        }
+
+        Path cached = entry != null ? cacheDir.resolve(entry.getString(FILE)) : null;
+        boolean present = cached != null && cached.toFile().exists();
+
+        if (present && expectedSha1 != null && expectedSha1.equalsIgnoreCase(entry.getString(SHA1))) {
+            LOG.info("[{} - {}]: Using cached artifact {} ({}).", request.getLogName(), request.getId(), request.getModuleId(), entry.getString(SHA1));
+            return useEntry(request, key, entry, false);
+        }
+
+        // A cached entry with a different checksum is stale, it must not be revalidated with a conditional request.
+        boolean conditional = present && expectedSha1 == null;
+        Files.createDirectories(cacheDir);
+        Path download = Files.createTempFile(cacheDir, request.getArtifactId() + "-", ".download");
+        RepositoryHttpClient.DownloadResult result;
+        String fileName;
+        try {
+            result = httpClient.download(location, download,
+                    conditional ? entry.getString(ETAG) : null, conditional ? entry.getString(LAST_MODIFIED) : null);
+
+            if (result.isNotModified()) {
+                LOG.info("[{} - {}]: Artifact {} not modified, using cached version.", request.getLogName(), request.getId(), request.getModuleId());
+                return useEntry(request, key, entry, false);
+            }
+            if (expectedSha1 != null && !expectedSha1.equalsIgnoreCase(result.getSha1())) {
+                throw new IOException("Checksum mismatch for " + request.getModuleId() + ", expected " + expectedSha1 + " got " + result.getSha1());
+            }
+
+            fileName = result.getSha1() + "." + request.getType();
+            Files.move(download, cacheDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(download);
+        }
+
+        JsonObject newEntry = new JsonObject()
+                .put(FILE, fileName)
+                .put(SHA1, result.getSha1())
+                .put(SHA256, result.getSha256())
+                .put(ETAG, result.getEtag())
+                .put(LAST_MODIFIED, result.getLastModified())
+                .put(SIZE, result.getSize());
+
+        synchronized (this) {
+            if (entry != null && !fileName.equals(entry.getString(FILE))) {
+                artifacts().remove(key);
+                if (pinned.getOrDefault(key, 0) > 1) {
+                    replaced.computeIfAbsent(key, k -> new HashSet<>()).add(entry.getString(FILE));
+                } else {
+                    deleteIfUnreferenced(entry.getString(FILE));
+                }
+            }
+            artifacts().put(key, newEntry);
+        }
+        return useEntry(request, key, newEntry, true);
+    }
+
+    /**
+     * Marks the entry as used, the index is only evicted and written when an entry was added. The access time of a
+     * cache hit is persisted with the next write.
+     */
+    private synchronized Path useEntry(ModuleRequest request, String key, JsonObject entry, boolean added) {
+        entry.put(LAST_ACCESS, System.currentTimeMillis());
+        artifacts().put(key, entry);
+        if (added) {
+            evict();
+            writeIndex();
+        }
+        Path path = cacheDir.resolve(entry.getString(FILE));
+        request.setLocalPath(path);
+        request.setSha1(entry.getString(SHA1));
+        return path;
+    }
+
+    public synchronized boolean isInstalled(ModuleRequest request) {
+        JsonObject installed = installed().getJsonObject(installKey(request));
+        if (installed == null || request.getSha1() == null) {
+            return false;
+        }
+        String baseLocation = installed.getString(BASE_LOCATION);
+        return request.getSha1().equalsIgnoreCase(installed.getString(SHA1))
+                && baseLocation != null && Paths.get(baseLocation).toFile().exists();
+    }
+
+    public synchronized void markInstalled(ModuleRequest request) {
+        installed().put(installKey(request), new JsonObject()
+                .put(VERSION, request.getVersion())
+                .put(SHA1, request.getSha1())
+                .put(BASE_LOCATION, request.getBaseLocation() != null ? request.getBaseLocation().toString() : null));
+        writeIndex();
+    }
+
+    /**
+     * Unpins the artifact of the request, the entry can be evicted once every request that uses it is released. A file
+     * that was replaced by a new build while other requests still used it is removed with the last release.
+     */
+    public synchronized void release(ModuleRequest request) {
+        String key = cacheKey(request);
+        if (pinnedBy.remove(request) && pinned.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null) == null) {
+            Set<String> files = replaced.remove(key);
+            if (files != null) {
+                files.forEach(this::deleteIfUnreferenced);
+            }
+        }
+    }
+
+    private void evict() {
+        long total = artifacts().stream()
+                .mapToLong(e -> ((JsonObject) e.getValue()).getLong(SIZE, 0L))
+                .sum();
+        if (total <= maxSize) {
+            return;
+        }
+        List<String> candidates = artifacts().stream()
+                .filter(e -> !pinned.containsKey(e.getKey()))
+                .sorted(Comparator.comparingLong((Map.Entry<String, Object> e) -> ((JsonObject) e.getValue()).getLong(LAST_ACCESS, 0L)))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        for (String key : candidates) {
+            if (total <= maxSize) {
+                break;
+            }
+            JsonObject entry = (JsonObject) artifacts().remove(key);
+            total -= entry.getLong(SIZE, 0L);
+            deleteIfUnreferenced(entry.getString(FILE));
+            LOG.info("Evicted artifact {} from cache.", key);
+        }
+    }
+
+    private void deleteIfUnreferenced(String fileName) {
+        boolean referenced = artifacts().stream()
+                .anyMatch(e -> fileName.equals(((JsonObject) e.getValue()).getString(FILE)));
+        if (!referenced) {
+            try {
+                Files.deleteIfExists(cacheDir.resolve(fileName));
+            } catch (IOException e) {
+                LOG.warn("Unable to remove cached artifact {} : {}", fileName, e.getMessage());
+            }
+        }
+    }
+
+    private JsonObject artifacts() {
+        return index.getJsonObject(ARTIFACTS);
+    }
+
+    private JsonObject installed() {
+        return index.getJsonObject(INSTALLED);
+    }
+
+    private JsonObject readIndex() {
+        JsonObject result = new JsonObject();
+        if (indexFile.toFile().exists()) {
+            try {
+                result = new JsonObject(new String(Files.readAllBytes(indexFile), StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                LOG.warn("Unable to read artifact cache index {}, starting with an empty cache : {}", indexFile, e.getMessage());
+            }
+        }
+        if (!result.containsKey(ARTIFACTS)) {
+            result.put(ARTIFACTS, new JsonObject());
+        }
+        if (!result.containsKey(INSTALLED)) {
+            result.put(INSTALLED, new JsonObject());
+        }
+        return result;
+    }
+
+    private void writeIndex() {
+        try {
+            Files.createDirectories(cacheDir);
+            Path temp = cacheDir.resolve(INDEX_FILE + ".tmp");
+            Files.write(temp, index.encodePrettily().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to write artifact cache index {} : {}", indexFile, e.getMessage());
+        }
+    }
+
+    private static String readChecksum(String sidecar) {
+        if (sidecar == null || sidecar.trim().isEmpty()) {
+            return null;
+        }
+        return sidecar.trim().split("\\s+")[0];
+    }
+
+    private static String cacheKey(ModuleRequest request) {
+        return String.join(":", request.getGroupId(), request.getArtifactId(), request.getVersion(),
+                request.getClassifier() != null ? request.getClassifier() : "", request.getType());
+    }
+
+    private static String installKey(ModuleRequest request) {
+        return String.join(":", request.getGroupId(), request.getArtifactId(),
+                request.getClassifier() != null ? request.getClassifier() : "");
+    }
+}
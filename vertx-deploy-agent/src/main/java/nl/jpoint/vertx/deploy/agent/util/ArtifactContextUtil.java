@@ -3,98 +3,76 @@ package nl.jpoint.vertx.deploy.agent.util;
 import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.net.URI;
-import java.nio.file.*;
-import java.util.HashMap;
 
 public class ArtifactContextUtil {
     public static final String ARTIFACT_CONTEXT = "artifact_context.xml";
     private static final Logger LOG = LoggerFactory.getLogger(ArtifactContextUtil.class);
-    private static final String BASE_LOCATION = "/artifact/baselocation/text()";
-    private static final String RESTART_ON_CHANGED_CONTENT = "/artifact/checkContent/text()";
-    private static final String RESTART_COMMAND = "/artifact/restartCommand/text()";
-    private static final String TEST_COMMAND = "/artifact/testCommand/text()";
-    private final XPath xPath = XPathFactory.newInstance().newXPath();
-    private Document document;
-
-    public ArtifactContextUtil(ModuleRequest request, Path location) {
-        byte[] data;
-        if (request.getType().equals(ModuleRequest.GZIP_TYPE)) {
-            data = new GzipExtractor<>(request).readArtifactContext(location);
-        } else {
-            try (FileSystem zipFs = this.getFileSystem(location.toString())) {
-                Path path = zipFs.getPath(ARTIFACT_CONTEXT);
-                data = Files.readAllBytes(path);
-            } catch (IOException e) {
-                LOG.error("[{} - {}] : No 'artifact_context.xml' in archive. Failing build : {}", LogConstants.DEPLOY_ARTIFACT_REQUEST, request.getId(), e.getMessage());
-                throw new IllegalStateException(e.getMessage(), e);
-            }
-        }
+    private static final String ARTIFACT = "artifact";
+    private static final String BASE_LOCATION = "baselocation";
+    private static final String RESTART_ON_CHANGED_CONTENT = "checkContent";
+    private static final String RESTART_COMMAND = "restartCommand";
+    private static final String TEST_COMMAND = "testCommand";
+    private String baseLocation = "";
+    private String checkContent = "";
+    private String restartCommand = "";
+    private String testCommand = "";
 
+    public ArtifactContextUtil(ModuleRequest request, byte[] data) {
+        XMLStreamReader reader = null;
         try {
-            DocumentBuilderFactory builderFactory =
-                    DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder;
-            builder = builderFactory.newDocumentBuilder();
-            document = builder.parse(
-                    new ByteArrayInputStream(data));
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+            reader = XmlStreams.open(new ByteArrayInputStream(data));
+            reader.nextTag();
+            if (!ARTIFACT.equals(reader.getLocalName())) {
+                return;
+            }
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                readElement(reader);
+            }
+        } catch (XMLStreamException e) {
             LOG.error("[{} - {}] : Corrupt 'artifact_context.xml' in archive. Failing build : {}", LogConstants.DEPLOY_ARTIFACT_REQUEST, request.getId(), e.getMessage());
             throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            XmlStreams.close(reader);
         }
     }
 
-    public String getBaseLocation() {
-        try {
-            return document != null ? (String) xPath.compile(BASE_LOCATION).evaluate(document, XPathConstants.STRING) : null;
-        } catch (XPathExpressionException e) {
-            LOG.error(e.getMessage(), e);
-            return null;
+    private void readElement(XMLStreamReader reader) throws XMLStreamException {
+        switch (reader.getLocalName()) {
+            case BASE_LOCATION:
+                baseLocation = XmlStreams.text(reader);
+                break;
+            case RESTART_ON_CHANGED_CONTENT:
+                checkContent = XmlStreams.text(reader);
+                break;
+            case RESTART_COMMAND:
+                restartCommand = XmlStreams.text(reader);
+                break;
+            case TEST_COMMAND:
+                testCommand = XmlStreams.text(reader);
+                break;
+            default:
+                XmlStreams.skip(reader);
         }
     }
 
+    public String getBaseLocation() {
+        return baseLocation;
+    }
+
     public boolean getCheckConfig() {
-        try {
-            return Boolean.valueOf(document != null ? (String) xPath.compile(RESTART_ON_CHANGED_CONTENT).evaluate(document, XPathConstants.STRING) : null);
-        } catch (XPathExpressionException e) {
-            LOG.error(e.getMessage(), e);
-            return false;
-        }
+        return Boolean.valueOf(checkContent);
     }
 
     public String getRestartCommand() {
-        try {
-            return document != null ? (String) xPath.compile(RESTART_COMMAND).evaluate(document, XPathConstants.STRING) : null;
-        } catch (XPathExpressionException e) {
-            LOG.error(e.getMessage(), e);
-            return null;
-        }
+        return restartCommand;
     }
 
     public String getTestCommand() {
-        try {
-            return document != null ? (String) xPath.compile(TEST_COMMAND).evaluate(document, XPathConstants.STRING) : null;
-        } catch (XPathExpressionException e) {
-            LOG.error(e.getMessage(), e);
-            return null;
-        }
-    }
-
-    private FileSystem getFileSystem(String location) throws IOException {
-        Path path = Paths.get(location);
-        URI uri = URI.create("jar:file:" + path.toUri().getPath());
-        return FileSystems.newFileSystem(uri, new HashMap<String, String>());
+        return testCommand;
     }
 }
@@ -0,0 +1,109 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Class data sharing archives of applications, stored per module in {artifact.storage}/.cds. The first start of a
+ * version dumps an archive when the application exits, the archive is only used by later starts when the application
+ * reported a successful start. Archives of other versions of the module are removed once the running version stopped.
+ */
+public class CdsArchive {
+    private static final Logger LOG = LoggerFactory.getLogger(CdsArchive.class);
+    private static final String CDS_DIR = ".cds";
+    private static final String ARCHIVE = ".jsa";
+    private static final String CONFIRMED = ".ok";
+    private static final String IGNORE_UNRECOGNIZED = "-XX:+IgnoreUnrecognizedVMOptions";
+
+    private final Path cdsDir;
+    private final ModuleRegistry moduleRegistry;
+
+    public CdsArchive(DeployConfig deployConfig, ModuleRegistry moduleRegistry) {
+        this.cdsDir = deployConfig.getArtifactRepo().resolve(CDS_DIR);
+        this.moduleRegistry = moduleRegistry;
+    }
+
+    /**
+     * Options for the application JVM, JVMs that do not support dynamic archives ignore them.
+     */
+    public String getJavaOpts(DeployApplicationRequest request) {
+        Path moduleDir = cdsDir.resolve(name(request.getMavenArtifactId()));
+        Path archive = moduleDir.resolve(name(request.getVersion()) + ARCHIVE);
+        Path confirmed = moduleDir.resolve(name(request.getVersion()) + CONFIRMED);
+        try {
+            Files.createDirectories(moduleDir);
+            if (archive.toFile().isFile() && confirmed.toFile().exists()) {
+                LOG.info("[{} - {}]: Starting module '{}' with class data sharing archive {}.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId(), archive);
+                return IGNORE_UNRECOGNIZED + " -Xshare:auto -XX:SharedArchiveFile=" + archive;
+            }
+            Files.deleteIfExists(archive);
+            Files.deleteIfExists(confirmed);
+            return IGNORE_UNRECOGNIZED + " -XX:ArchiveClassesAtExit=" + archive;
+        } catch (IOException e) {
+            LOG.warn("[{} - {}]: Unable to prepare class data sharing archive for module '{}' : {}", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId(), e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * Marks the archive of a module as usable, called when the module reports a successful start. A module that
+     * reports without version is resolved to its running version.
+     */
+    public void confirm(String moduleId) {
+        String[] ids = moduleId.split(":", 3);
+        String version = ids.length == 3 ? ids[2] : null;
+        if (ids.length == 2) {
+            version = moduleRegistry.getRunningModules().get(moduleId);
+        }
+        if (version == null) {
+            return;
+        }
+        Path moduleDir = cdsDir.resolve(name(ids[0] + ":" + ids[1]));
+        Path confirmed = moduleDir.resolve(name(version) + CONFIRMED);
+        try {
+            if (moduleDir.toFile().isDirectory() && !confirmed.toFile().exists()) {
+                Files.createFile(confirmed);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to confirm class data sharing archive for module '{}' : {}", moduleId, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the archives of other versions of the module, called after the previous version stopped. The archive of a
+     * version that is still registered as running is kept.
+     */
+    public void evict(DeployApplicationRequest request) {
+        Path moduleDir = cdsDir.resolve(name(request.getMavenArtifactId()));
+        if (!moduleDir.toFile().isDirectory()) {
+            return;
+        }
+        String running = moduleRegistry.getRunningVersion(request);
+        try (Stream<Path> files = Files.list(moduleDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (!isVersion(fileName, request.getVersion()) && (running == null || !isVersion(fileName, running))) {
+                    LOG.info("Removing class data sharing archive {}.", file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("[{} - {}]: Unable to remove class data sharing archives of module '{}' : {}", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId(), e.getMessage());
+        }
+    }
+
+    private boolean isVersion(String fileName, String version) {
+        return fileName.equals(name(version) + ARCHIVE) || fileName.equals(name(version) + CONFIRMED);
+    }
+
+    private String name(String id) {
+        return id.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
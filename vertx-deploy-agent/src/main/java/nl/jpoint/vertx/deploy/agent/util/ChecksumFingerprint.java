@@ -0,0 +1,44 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
+
+class ChecksumFingerprint implements ContentFingerprint {
+    private static final int BUFFER_SIZE = 128 * 1024;
+    private static final long MAP_THRESHOLD = 4L * 1024 * 1024;
+    private static final long MAP_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private final Supplier<Checksum> checksumSupplier;
+
+    ChecksumFingerprint(Supplier<Checksum> checksumSupplier) {
+        this.checksumSupplier = checksumSupplier;
+    }
+
+    @Override
+    public long fingerprint(Path file) throws IOException {
+        Checksum checksum = checksumSupplier.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK_SIZE, size - position));
+                    checksum.update(mapped);
+                }
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    checksum.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return checksum.getValue();
+    }
+}
@@ -0,0 +1,124 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.resolution.DependencyResolutionException;
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.eclipse.aether.util.filter.DependencyFilterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the runtime dependencies of an application once, with the application jar first on the classpath. The
+ * classpath of a release version is stored in {artifact.storage}/.classpath so a restart does not resolve it again.
+ */
+public class ClasspathResolver {
+    private static final Logger LOG = LoggerFactory.getLogger(ClasspathResolver.class);
+    private static final String CLASSPATH_DIR = ".classpath";
+    private static final String MAIN_VERTICLE = "Main-Verticle";
+
+    private final DeployConfig deployConfig;
+    private final AetherResolver aetherResolver;
+
+    public ClasspathResolver(DeployConfig deployConfig) {
+        this.deployConfig = deployConfig;
+        this.aetherResolver = new AetherResolver(deployConfig);
+    }
+
+    public List<Path> resolve(DeployApplicationRequest request) {
+        Path classpathFile = deployConfig.getArtifactRepo().resolve(CLASSPATH_DIR).resolve(request.getModuleId().replaceAll("[^A-Za-z0-9._-]", "_") + ".txt");
+        if (!request.isSnapshot()) {
+            List<Path> cached = readClasspath(classpathFile);
+            if (!cached.isEmpty() && cached.stream().allMatch(path -> path.toFile().isFile())) {
+                LOG.info("[{} - {}]: Using resolved classpath of module '{}'.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId());
+                return cached;
+            }
+        }
+        List<Path> classpath = resolveDependencies(request);
+        writeClasspath(classpathFile, classpath);
+        return classpath;
+    }
+
+    /**
+     * The verticle to run, either the configured main service or the Main-Verticle from the manifest of the application.
+     * Fails when neither is set, as the maven verticle factory does.
+     */
+    public String getMainVerticle(DeployApplicationRequest request, List<Path> classpath) {
+        if (request.getMainService() != null && !request.getMainService().trim().isEmpty()) {
+            return "service:" + request.getMainService();
+        }
+        Path application = classpath.get(0);
+        String mainVerticle;
+        try (JarFile jar = new JarFile(application.toFile())) {
+            mainVerticle = jar.getManifest() != null ? jar.getManifest().getMainAttributes().getValue(MAIN_VERTICLE) : null;
+        } catch (IOException e) {
+            LOG.error("[{} - {}]: Unable to read manifest of {}.", LogConstants.DEPLOY_REQUEST, request.getId(), application, e);
+            throw new IllegalStateException(e);
+        }
+        if (mainVerticle == null || mainVerticle.trim().isEmpty()) {
+            LOG.error("[{} - {}]: Module '{}' has no Main-Verticle in its manifest and no MAIN_SERVICE configured.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId());
+            throw new IllegalStateException("Module " + request.getModuleId() + " has no Main-Verticle in its manifest and no MAIN_SERVICE configured");
+        }
+        return mainVerticle.trim();
+    }
+
+    private List<Path> resolveDependencies(DeployApplicationRequest request) {
+        LOG.info("[{} - {}]: Resolving classpath of module '{}'.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId());
+        DefaultArtifact artifact = new DefaultArtifact(request.getGroupId(), request.getArtifactId(), request.getClassifier(), "jar", request.getVersion());
+        CollectRequest collectRequest = new CollectRequest(new Dependency(artifact, JavaScopes.RUNTIME), aetherResolver.getRepositories());
+        DependencyRequest dependencyRequest = new DependencyRequest(collectRequest, DependencyFilterUtils.classpathFilter(JavaScopes.RUNTIME));
+        try {
+            return aetherResolver.resolveDependencies(dependencyRequest).getArtifactResults().stream()
+                    .map(ArtifactResult::getArtifact)
+                    .sorted(Comparator.comparing((Artifact resolved) -> !(resolved.getGroupId().equals(request.getGroupId()) && resolved.getArtifactId().equals(request.getArtifactId()))))
+                    .map(resolved -> resolved.getFile().toPath())
+                    .collect(Collectors.toList());
+        } catch (DependencyResolutionException e) {
+            LOG.error("[{} - {}]: Unable to resolve classpath of module '{}'.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId(), e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Path> readClasspath(Path classpathFile) {
+        try {
+            return classpathFile.toFile().exists() ? Files.readAllLines(classpathFile, StandardCharsets.UTF_8).stream()
+                    .map(Path::of)
+                    .collect(Collectors.toList()) : List.of();
+        } catch (IOException e) {
+            LOG.warn("Unable to read classpath {} : {}", classpathFile, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void writeClasspath(Path classpathFile, List<Path> classpath) {
+        try {
+            Files.createDirectories(classpathFile.getParent());
+            Path temp = classpathFile.resolveSibling(classpathFile.getFileName() + ".tmp");
+            Files.write(temp, classpath.stream().map(Path::toString).collect(Collectors.toList()), StandardCharsets.UTF_8);
+            Files.move(temp, classpathFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to write classpath {} : {}", classpathFile, e.getMessage());
+        }
+    }
+
+    public static String toClasspath(List<Path> classpath) {
+        return classpath.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
+    }
+}
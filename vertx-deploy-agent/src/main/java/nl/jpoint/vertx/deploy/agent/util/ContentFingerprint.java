@@ -0,0 +1,18 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * Fast, non cryptographic fingerprint of the content of a file. Implementations are thread-safe.
+ */
+public interface ContentFingerprint {
+
+    /**
+     * Same checksum as stored for each entry in a zip archive.
+     */
+    ContentFingerprint CRC_32 = new ChecksumFingerprint(CRC32::new);
+
+    long fingerprint(Path file) throws IOException;
+}
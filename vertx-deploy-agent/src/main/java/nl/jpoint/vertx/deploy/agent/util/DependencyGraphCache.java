@@ -0,0 +1,84 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Dependencies of deploy artifacts, stored as [groupId]:[artifactId]:[extension]:[classifier]:[version] per key in a
+ * json file, the classifier is left out when it is empty. Snapshots are never cached.
+ */
+public class DependencyGraphCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DependencyGraphCache.class);
+
+    private final Path file;
+    private JsonObject graphs;
+
+    public DependencyGraphCache(Path file) {
+        this.file = file;
+    }
+
+    public static String key(String coordinates, DeployType type, boolean testScope, String exclusions, String properties) {
+        return String.join("|", type.name(), coordinates, Boolean.toString(testScope), exclusions, properties);
+    }
+
+    public synchronized Optional<List<Artifact>> get(String key) {
+        JsonArray dependencies = graphs().getJsonArray(key);
+        if (dependencies == null) {
+            return Optional.empty();
+        }
+        return Optional.of(dependencies.stream()
+                .map(String.class::cast)
+                .map(DefaultArtifact::new)
+                .collect(Collectors.toList()));
+    }
+
+    public synchronized void put(String key, List<Artifact> dependencies) {
+        if (key.contains("-SNAPSHOT")) {
+            return;
+        }
+        graphs().put(key, new JsonArray(dependencies.stream()
+                .map(DependencyGraphCache::toCoordinates)
+                .collect(Collectors.toList())));
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, graphs.encodePrettily().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to write dependency graphs {} : {}", file, e.getMessage());
+        }
+    }
+
+    private JsonObject graphs() {
+        if (graphs == null) {
+            graphs = new JsonObject();
+            if (file.toFile().isFile()) {
+                try {
+                    graphs = new JsonObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Unable to read dependency graphs {} : {}", file, e.getMessage());
+                }
+            }
+        }
+        return graphs;
+    }
+
+    private static String toCoordinates(Artifact artifact) {
+        if (artifact.getClassifier().isEmpty()) {
+            return String.join(":", artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(), artifact.getVersion());
+        }
+        return String.join(":", artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(), artifact.getClassifier(), artifact.getVersion());
+    }
+}
@@ -0,0 +1,90 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.rx.java.RxHelper;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.buffer.Buffer;
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.subjects.AsyncSubject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static rx.Observable.just;
+
+/**
+ * Asks an application to drain before it is stopped. The agent writes a marker file at the location passed to the
+ * application as vertxdeploy.drain and waits until the application reports through /deploy/drained, or until
+ * application.drain.timeout seconds passed.
+ */
+public class DrainCoordinator {
+    private static final Logger LOG = LoggerFactory.getLogger(DrainCoordinator.class);
+    private static final String DRAIN_SUFFIX = ".drain";
+
+    private final Vertx rxVertx;
+    private final DeployConfig config;
+    private final Map<String, AsyncSubject<String>> pendingDrain = new ConcurrentHashMap<>();
+
+    public DrainCoordinator(io.vertx.core.Vertx vertx, DeployConfig config) {
+        this.rxVertx = new Vertx(vertx);
+        this.config = config;
+    }
+
+    public static String getDrainFile(DeployConfig config, String moduleId) {
+        return config.getRunDir() + moduleId + DRAIN_SUFFIX;
+    }
+
+    /**
+     * Emits true when the application reported it drained, false when the grace period passed or draining is disabled.
+     */
+    public Observable<Boolean> drain(DeployApplicationRequest request, String moduleId) {
+        if (config.getApplicationDrainTimeout() <= 0) {
+            return just(false);
+        }
+        AsyncSubject<String> drained = AsyncSubject.create();
+        pendingDrain.put(moduleId, drained);
+        LOG.info("[{} - {}]: Draining module '{}' for at most {} seconds.", LogConstants.DEPLOY_REQUEST, request.getId(), moduleId, config.getApplicationDrainTimeout());
+        JsonObject marker = new JsonObject()
+                .put("id", moduleId)
+                .put("deadline", System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.getApplicationDrainTimeout()));
+        return rxVertx.fileSystem().rxWriteFile(getDrainFile(config, moduleId), Buffer.buffer(marker.encode()))
+                .toObservable()
+                .flatMap(x -> drained.timeout(config.getApplicationDrainTimeout(), TimeUnit.SECONDS, RxHelper.scheduler(rxVertx.getDelegate())))
+                .map(x -> {
+                    LOG.info("[{} - {}]: Module '{}' drained.", LogConstants.DEPLOY_REQUEST, request.getId(), moduleId);
+                    return true;
+                })
+                .onErrorReturn(t -> {
+                    LOG.warn("[{} - {}]: Module '{}' did not report drained, stopping it anyway -> {}", LogConstants.DEPLOY_REQUEST, request.getId(), moduleId, t.getMessage());
+                    return false;
+                })
+                .doOnTerminate(() -> pendingDrain.remove(moduleId, drained));
+    }
+
+    /**
+     * Called from /deploy/drained, the id is matched against [groupId]:[artifactId]:[version] or [groupId]:[artifactId].
+     * Any other id, like a bare groupId, matches nothing.
+     */
+    public void drained(String id) {
+        boolean mavenId = id.split(":", -1).length == 2;
+        pendingDrain.forEach((moduleId, drained) -> {
+            if (moduleId.equals(id) || mavenId && moduleId.startsWith(id + ":")) {
+                drained.onNext(id);
+                drained.onCompleted();
+            }
+        });
+    }
+
+    public Observable<Boolean> clear(String moduleId) {
+        String drainFile = getDrainFile(config, moduleId);
+        return rxVertx.fileSystem().rxExists(drainFile)
+                .toObservable()
+                .flatMap(exists -> exists ? rxVertx.fileSystem().rxDelete(drainFile).toObservable().map(x -> true) : just(false))
+                .onErrorReturn(t -> false);
+    }
+}
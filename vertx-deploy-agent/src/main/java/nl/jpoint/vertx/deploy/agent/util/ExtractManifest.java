@@ -0,0 +1,187 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps track of the files extracted to a base location, so a redeploy only has to apply the differences between the
+ * archive and what was extracted before.
+ */
+public class ExtractManifest {
+    private static final Logger LOG = LoggerFactory.getLogger(ExtractManifest.class);
+
+    private static final String MANIFEST_DIR = ".manifest";
+    private static final String FILES = "files";
+    private static final String DIRECTORIES = "directories";
+    private static final String SIZE = "size";
+    private static final String CRC = "crc";
+    private static final String MODIFIED = "modified";
+    private static final String MODE = "mode";
+
+    private final Path manifestFile;
+    private final Path basePath;
+    private final boolean existing;
+    private final JsonObject files;
+    private final Set<String> directories;
+    private final Set<String> seen = new HashSet<>();
+
+    private ExtractManifest(Path manifestFile, Path basePath, JsonObject manifest, boolean existing) {
+        this.manifestFile = manifestFile;
+        this.basePath = basePath;
+        this.existing = existing;
+        this.files = manifest.getJsonObject(FILES, new JsonObject());
+        this.directories = manifest.getJsonArray(DIRECTORIES, new JsonArray()).stream()
+                .map(Object::toString)
+                .collect(Collectors.toSet());
+    }
+
+    public static ExtractManifest load(Path artifactRepo, Path basePath) {
+        return load(artifactRepo, basePath, null);
+    }
+
+    /**
+     * Loads the manifest of a module that shares its base location with other modules.
+     */
+    public static ExtractManifest load(Path artifactRepo, Path basePath, String moduleId) {
+        Path manifestFile = manifestFile(artifactRepo, basePath, moduleId);
+        if (manifestFile.toFile().exists() && basePath.toFile().exists()) {
+            try {
+                JsonObject manifest = new JsonObject(new String(Files.readAllBytes(manifestFile), StandardCharsets.UTF_8));
+                return new ExtractManifest(manifestFile, basePath, manifest, true);
+            } catch (Exception e) {
+                LOG.warn("Unable to read extract manifest {}, doing a full extract : {}", manifestFile, e.getMessage());
+            }
+        }
+        return new ExtractManifest(manifestFile, basePath, new JsonObject(), false);
+    }
+
+    public static void delete(Path artifactRepo, Path basePath) {
+        try {
+            Files.deleteIfExists(manifestFile(artifactRepo, basePath, null));
+        } catch (IOException e) {
+            LOG.warn("Unable to remove extract manifest for {} : {}", basePath, e.getMessage());
+        }
+    }
+
+    private static Path manifestFile(Path artifactRepo, Path basePath, String moduleId) {
+        String location = basePath.toAbsolutePath().normalize().toString() + (moduleId != null ? "-" + moduleId : "");
+        String name = location.replaceAll("[^A-Za-z0-9._-]", "_");
+        return artifactRepo.resolve(MANIFEST_DIR).resolve(name + ".json");
+    }
+
+    public boolean isExisting() {
+        return existing;
+    }
+
+    public String name(Path target) {
+        return basePath.relativize(target).toString();
+    }
+
+    /**
+     * An entry is unchanged when it matches the manifest and the file on disk still has the size and modification time
+     * it was written with. An entry with missing fields counts as changed.
+     */
+    public synchronized boolean isUnchanged(Path target, long size, long crc, long modified, int mode) {
+        JsonObject entry = files.getJsonObject(name(target));
+        if (entry == null || !Objects.equals(entry.getLong(SIZE), size) || !Objects.equals(entry.getLong(CRC), crc)
+                || !Objects.equals(entry.getLong(MODIFIED), modified) || !Objects.equals(entry.getInteger(MODE), mode)) {
+            return false;
+        }
+        try {
+            return Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS)
+                    && Files.size(target) == size
+                    && Files.getLastModifiedTime(target).toMillis() == modified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public synchronized void putFile(Path target, long size, long crc, long modified, int mode) {
+        String name = name(target);
+        seen.add(name);
+        files.put(name, new JsonObject()
+                .put(SIZE, size)
+                .put(CRC, crc)
+                .put(MODIFIED, modified)
+                .put(MODE, mode));
+    }
+
+    public synchronized void putDirectory(Path target) {
+        String name = name(target);
+        seen.add(name);
+        directories.add(name);
+    }
+
+    public synchronized void putLink(Path target) {
+        seen.add(name(target));
+    }
+
+    /**
+     * Removes files and directories from the base location that were extracted before but are no longer in the archive.
+     */
+    public int removeStale() {
+        int removed = 0;
+        List<String> staleFiles = files.fieldNames().stream()
+                .filter(name -> !seen.contains(name))
+                .collect(Collectors.toList());
+        for (String name : staleFiles) {
+            files.remove(name);
+            removed += delete(basePath.resolve(name)) ? 1 : 0;
+        }
+        List<String> staleDirectories = directories.stream()
+                .filter(name -> !seen.contains(name))
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .collect(Collectors.toList());
+        for (String name : staleDirectories) {
+            directories.remove(name);
+            Path directory = basePath.resolve(name);
+            try (Stream<Path> content = Files.list(directory)) {
+                if (!content.findAny().isPresent()) {
+                    removed += delete(directory) ? 1 : 0;
+                }
+            } catch (IOException e) {
+                LOG.debug("Unable to list stale directory {} : {}", directory, e.getMessage());
+            }
+        }
+        return removed;
+    }
+
+    private boolean delete(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Unable to remove stale file {} : {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    public void save() {
+        try {
+            Files.createDirectories(manifestFile.getParent());
+            Path temp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+            JsonObject manifest = new JsonObject()
+                    .put(FILES, files)
+                    .put(DIRECTORIES, new JsonArray(directories.stream().sorted().collect(Collectors.toList())));
+            Files.write(temp, manifest.encode().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to write extract manifest {} : {}", manifestFile, e.getMessage());
+        }
+    }
+}
@@ -7,7 +7,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -15,28 +14,25 @@ public class FileDigestUtil {
 
     private static final Logger LOG = LoggerFactory.getLogger(FileDigestUtil.class);
 
-    private MessageDigest md;
-
-    public FileDigestUtil() {
-        try {
-            md = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            LOG.error("Error creating MD instance", e);
-            md = null;
-        }
-    }
+    private static final String ALGORITHM = "MD5";
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     public byte[] getFileMd5Sum(Path unpackFile) {
-        if (md == null || !unpackFile.toFile().exists()) {
-            LOG.debug("MD is null {}, or file does not exist {}", md, unpackFile);
+        if (!unpackFile.toFile().exists()) {
+            LOG.debug("File does not exist {}", unpackFile);
             return new byte[0];
         }
         try (InputStream is = Files.newInputStream(unpackFile)) {
-            DigestInputStream dis = new DigestInputStream(is, md);
-            while ((dis.read()) != -1) ;
-            byte[] digest = md.digest();
-            md.reset();
-            return digest;
+            MessageDigest md = MessageDigest.getInstance(ALGORITHM);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                md.update(buffer, 0, n);
+            }
+            return md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            LOG.error("Error creating MD instance", e);
+            return new byte[0];
         } catch (IOException e) {
             LOG.error("Error calculating MD5 sum", e);
             return new byte[0];
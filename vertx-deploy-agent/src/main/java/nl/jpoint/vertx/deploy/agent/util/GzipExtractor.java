@@ -1,25 +1,34 @@
 package nl.jpoint.vertx.deploy.agent.util;
 
-import nl.jpoint.vertx.deploy.agent.command.ExtractArtifact;
 import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
-import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static nl.jpoint.vertx.deploy.agent.util.ArtifactContextUtil.ARTIFACT_CONTEXT;
 
 public class GzipExtractor<T extends ModuleRequest> {
-    private static final Logger LOG = LoggerFactory.getLogger(ExtractArtifact.class);
+    private static final Logger LOG = LoggerFactory.getLogger(GzipExtractor.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long NO_CRC = -1L;
 
     private final T request;
 
@@ -27,89 +36,221 @@ public class GzipExtractor<T extends ModuleRequest> {
         this.request = request;
     }
 
-    byte[] readArtifactContext(Path input) {
-        try (InputStream in = Files.newInputStream(getDeflatedFile(input));
-             TarArchiveInputStream tarIn = new TarArchiveInputStream(in)) {
-            ArchiveEntry entry = tarIn.getNextEntry();
-            while (entry != null) {
-                if (ARTIFACT_CONTEXT.equals(entry.getName())) {
-                    byte[] data = new byte[(int) entry.getSize()];
-                    tarIn.read(data, 0, data.length);
-                    return data;
-                }
-                entry = tarIn.getNextEntry();
-            }
-        } catch (IOException e) {
-            LOG.warn("[{} - {}]: Error extracting tar  {}.", request.getLogName(), request.getId(), e.getMessage());
-            throw new IllegalStateException(e);
-        }
-        LOG.error("Missing artifact_context.xml in {}", input);
-        throw new IllegalStateException("Missing artifact_context.xml in " + input.toString());
+    public void extractTar(Path input, Path output) {
+        extractTar(input, output, null, () -> null);
     }
 
-    public void extractTar(Path input, Path output) {
+    /**
+     * Extracts the archive to a known output, with a manifest only entries that differ from the previous extract are
+     * written.
+     */
+    public void extractTar(Path input, Path output, ExtractManifest manifest) {
+        extractTar(input, output, null, () -> manifest);
+    }
+
+    /**
+     * Extracts the archive in a single pass. The output location is resolved from the artifact_context.xml once it is
+     * read, entries that precede it in the archive are spooled next to the input and moved in place afterwards. When
+     * the resolver returns null the rest of the archive is skipped.
+     *
+     * @return the resolved output, or null if the archive was skipped.
+     */
+    public Path extractTar(Path input, Function<byte[], Path> outputResolver) {
+        return extractTar(input, outputResolver, () -> null);
+    }
+
+    /**
+     * Extracts the archive in a single pass, the manifest is requested once the output is resolved.
+     */
+    public Path extractTar(Path input, Function<byte[], Path> outputResolver, Supplier<ExtractManifest> manifest) {
+        return extractTar(input, null, outputResolver, manifest);
+    }
+
+    private Path extractTar(Path input, Path knownOutput, Function<byte[], Path> outputResolver, Supplier<ExtractManifest> manifestSupplier) {
         Map<Path, Path> symlinks = new HashMap<>();
-        try (InputStream in = Files.newInputStream(getDeflatedFile(input));
-             TarArchiveInputStream tarIn = new TarArchiveInputStream(in)) {
-            if (!output.toFile().exists()) {
-                Files.createDirectory(output);
+        Map<TarArchiveEntry, Path> spooled = new LinkedHashMap<>();
+        List<String> spooledDirectories = new ArrayList<>();
+        Path output = knownOutput;
+        ExtractManifest manifest = output != null ? manifestSupplier.get() : null;
+        Path spoolDir = null;
+        try (TarArchiveInputStream tarIn = openTar(input)) {
+            if (output != null) {
+                createOutput(output);
             }
-            TarArchiveEntry entry = (TarArchiveEntry) tarIn.getNextEntry();
+            TarArchiveEntry entry = tarIn.getNextTarEntry();
             while (entry != null) {
-                if (!entry.getName().equals("./")) {
-                    if (entry.isSymbolicLink()) {
-                        symlinks.put(output.resolve(entry.getName()).toAbsolutePath(), output.resolve(entry.getName()).getParent().resolve(entry.getLinkName()));
-                    } else {
-                        if (entry.isDirectory()) {
-                            Files.createDirectory(output.resolve(entry.getName()));
-                        } else if (!ARTIFACT_CONTEXT.equals(entry.getName())) {
-                            byte[] contents = new byte[(int) entry.getSize()];
-                            tarIn.read(contents, 0, contents.length);
-                            Files.write(output.resolve(entry.getName()), contents);
+                if (isArtifactContext(entry)) {
+                    if (output == null) {
+                        output = outputResolver.apply(readEntry(tarIn, entry));
+                        if (output == null) {
+                            return null;
+                        }
+                        manifest = manifestSupplier.get();
+                        createOutput(output);
+                        for (String directory : spooledDirectories) {
+                            Path target = resolve(output, directory);
+                            createDirectory(target);
+                            if (manifest != null) {
+                                manifest.putDirectory(target);
+                            }
+                        }
+                        for (Map.Entry<TarArchiveEntry, Path> file : spooled.entrySet()) {
+                            moveSpooled(file.getKey(), file.getValue(), resolve(output, file.getKey().getName()), manifest);
                         }
                     }
+                } else if (!entry.getName().equals("./")) {
+                    if (output == null) {
+                        if (entry.isSymbolicLink()) {
+                            symlinks.put(Path.of(entry.getName()), Path.of(entry.getName()).resolveSibling(entry.getLinkName()));
+                        } else if (entry.isDirectory()) {
+                            spooledDirectories.add(entry.getName());
+                        } else {
+                            if (spoolDir == null) {
+                                spoolDir = Files.createTempDirectory(input.toAbsolutePath().getParent(), ".extract-");
+                            }
+                            Path spoolFile = spoolDir.resolve(Integer.toString(spooled.size()));
+                            writeEntry(tarIn, entry, spoolFile);
+                            spooled.put(entry, spoolFile);
+                        }
+                    } else {
+                        extractEntry(tarIn, entry, output, symlinks, manifest);
+                    }
                 }
-                entry = (TarArchiveEntry) tarIn.getNextEntry();
+                entry = tarIn.getNextTarEntry();
             }
-            symlinks.forEach(this::createSymlink);
-            Files.delete(getDeflatedFile(input));
+            if (output == null) {
+                LOG.error("Missing artifact_context.xml in {}", input);
+                throw new IllegalStateException("Missing artifact_context.xml in " + input.toString());
+            }
+            for (Path link : symlinks.keySet()) {
+                Path linkPath = resolve(output, link.toString());
+                createSymlink(linkPath.toAbsolutePath(), resolve(output, symlinks.get(link).toString()));
+                if (manifest != null) {
+                    manifest.putLink(linkPath);
+                }
+            }
+            return output;
         } catch (IOException e) {
             LOG.warn("[{} - {}]: Error extracting tar  {}.", request.getLogName(), request.getId(), e.getMessage());
             throw new IllegalStateException(e);
+        } finally {
+            if (spoolDir != null) {
+                deleteSpool(spoolDir);
+            }
+        }
+    }
+
+    private void extractEntry(TarArchiveInputStream tarIn, TarArchiveEntry entry, Path output, Map<Path, Path> symlinks, ExtractManifest manifest) throws IOException {
+        Path target = resolve(output, entry.getName());
+        if (entry.isSymbolicLink()) {
+            symlinks.put(Path.of(entry.getName()), Path.of(entry.getName()).resolveSibling(entry.getLinkName()));
+        } else if (entry.isDirectory()) {
+            createDirectory(target);
+            if (manifest != null) {
+                manifest.putDirectory(target);
+            }
+        } else if (manifest == null) {
+            Files.createDirectories(target.getParent());
+            writeEntry(tarIn, entry, target);
+        } else {
+            Files.createDirectories(target.getParent());
+            long modified = entry.getModTime().getTime();
+            if (!manifest.isExisting() || !manifest.isUnchanged(target, entry.getSize(), NO_CRC, modified, entry.getMode())) {
+                replaceEntry(tarIn, entry, target, modified);
+            }
+            manifest.putFile(target, entry.getSize(), NO_CRC, modified, entry.getMode());
         }
+    }
+
+    private void moveSpooled(TarArchiveEntry entry, Path spoolFile, Path target, ExtractManifest manifest) throws IOException {
+        Files.createDirectories(target.getParent());
+        if (manifest == null) {
+            Files.move(spoolFile, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        long modified = entry.getModTime().getTime();
+        if (!manifest.isExisting() || !manifest.isUnchanged(target, entry.getSize(), NO_CRC, modified, entry.getMode())) {
+            Files.setLastModifiedTime(spoolFile, FileTime.fromMillis(modified));
+            Files.move(spoolFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        manifest.putFile(target, entry.getSize(), NO_CRC, modified, entry.getMode());
+    }
 
+    private Path resolve(Path output, String name) throws IOException {
+        Path target = output.resolve(name).normalize();
+        if (!target.startsWith(output.normalize())) {
+            throw new IOException("Entry " + name + " is outside of the target dir " + output);
+        }
+        return target;
     }
 
-    public void deflateGz(Path input) {
-        File tempFile;
-        tempFile = new File(getDeflatedFile(input).toUri());
+    private void replaceEntry(TarArchiveInputStream tarIn, TarArchiveEntry entry, Path target, long modified) throws IOException {
+        Path temp = target.resolveSibling("." + target.getFileName() + ".tmp");
+        try {
+            writeEntry(tarIn, entry, temp);
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(modified));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
 
-        try (
-                InputStream fin = Files.newInputStream(input);
-                BufferedInputStream in = new BufferedInputStream(fin);
-                GzipCompressorInputStream gzIn = new GzipCompressorInputStream(in);
-                FileOutputStream out = new FileOutputStream(tempFile)) {
+    private void writeEntry(TarArchiveInputStream tarIn, TarArchiveEntry entry, Path target) throws IOException {
+        long copied = Files.copy(tarIn, target, StandardCopyOption.REPLACE_EXISTING);
+        if (copied != entry.getSize()) {
+            throw new IOException("Truncated entry " + entry.getName() + ", expected " + entry.getSize() + " bytes but got " + copied);
+        }
+    }
 
-            final byte[] buffer = new byte[4096];
-            int n;
-            while (-1 != (n = gzIn.read(buffer))) {
-                out.write(buffer, 0, n);
-            }
+    private byte[] readEntry(TarArchiveInputStream tarIn, TarArchiveEntry entry) throws IOException {
+        byte[] contents = tarIn.readAllBytes();
+        if (contents.length != entry.getSize()) {
+            throw new IOException("Truncated entry " + entry.getName() + ", expected " + entry.getSize() + " bytes but got " + contents.length);
+        }
+        return contents;
+    }
 
+    private TarArchiveInputStream openTar(Path input) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(input), BUFFER_SIZE);
+        try {
+            return new TarArchiveInputStream(new GzipCompressorInputStream(in));
         } catch (IOException e) {
-            LOG.warn("[{} - {}]: Error extracting gzip  {}.", request.getLogName(), request.getId(), e.getMessage());
+            in.close();
+            throw e;
+        }
+    }
 
-            throw new IllegalStateException(e);
+    private boolean isArtifactContext(TarArchiveEntry entry) {
+        return ARTIFACT_CONTEXT.equals(entry.getName()) || ("./" + ARTIFACT_CONTEXT).equals(entry.getName());
+    }
+
+    private void createOutput(Path output) throws IOException {
+        if (!output.toFile().exists()) {
+            Files.createDirectory(output);
+        }
+    }
+
+    private void createDirectory(Path directory) throws IOException {
+        if (!directory.toFile().exists()) {
+            Files.createDirectory(directory);
         }
     }
 
-    private Path getDeflatedFile(Path input) {
-        return input.getParent().resolve(StringUtils.substringBeforeLast(input.getFileName().toString(), ".gz"));
+    private void deleteSpool(Path spoolDir) {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(spoolDir);
+        } catch (IOException e) {
+            LOG.warn("[{} - {}]: Unable to remove spool directory {} : {}.", request.getLogName(), request.getId(), spoolDir, e.getMessage());
+        }
     }
 
     private void createSymlink(Path link, Path target) {
         try {
             LOG.trace("Creating symbolic link {} -> {}", link, target);
+            Files.deleteIfExists(link);
             Files.createSymbolicLink(link, target.toRealPath());
         } catch (IOException e) {
             LOG.warn("[{} - {}]: Error extracting tar  {}.", request.getLogName(), request.getId(), e.getMessage());
@@ -0,0 +1,7 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+public enum LaunchMode {
+    PROCESS,
+    EMBEDDED,
+    CLASSPATH
+}
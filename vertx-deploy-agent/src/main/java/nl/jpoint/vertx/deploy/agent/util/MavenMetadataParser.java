@@ -0,0 +1,75 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser for the snapshot section of a maven-metadata.xml, stops reading as soon as the snapshot is parsed.
+ */
+public final class MavenMetadataParser {
+    private static final String METADATA = "metadata";
+    private static final String VERSIONING = "versioning";
+    private static final String SNAPSHOT = "snapshot";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String BUILD_NUMBER = "buildNumber";
+
+    private MavenMetadataParser() {
+        // Hide
+    }
+
+    /**
+     * @return the [timestamp]-[buildNumber] of the latest snapshot, or null if the metadata has no snapshot.
+     */
+    public static String parseSnapshotBuild(InputStream in) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XmlStreams.open(in);
+            String timestamp = null;
+            String buildNumber = null;
+            int depth = 0;
+            boolean inSnapshot = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+                    if (depth == 1 && !METADATA.equals(name) || depth == 2 && !VERSIONING.equals(name)) {
+                        XmlStreams.skip(reader);
+                        depth--;
+                    } else if (depth == 3) {
+                        if (SNAPSHOT.equals(name)) {
+                            inSnapshot = true;
+                        } else {
+                            XmlStreams.skip(reader);
+                            depth--;
+                        }
+                    } else if (depth == 4 && inSnapshot) {
+                        if (TIMESTAMP.equals(name)) {
+                            timestamp = XmlStreams.text(reader).trim();
+                            depth--;
+                        } else if (BUILD_NUMBER.equals(name)) {
+                            buildNumber = XmlStreams.text(reader).trim();
+                            depth--;
+                        } else {
+                            XmlStreams.skip(reader);
+                            depth--;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == 3 && inSnapshot) {
+                        break;
+                    }
+                    depth--;
+                }
+            }
+            return timestamp != null && !timestamp.isEmpty() && buildNumber != null && !buildNumber.isEmpty() ? timestamp + "-" + buildNumber : null;
+        } catch (XMLStreamException e) {
+            throw new IOException("Error while parsing metadata", e);
+        } finally {
+            XmlStreams.close(reader);
+        }
+    }
+}
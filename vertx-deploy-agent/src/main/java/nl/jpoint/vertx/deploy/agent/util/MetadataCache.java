@@ -0,0 +1,88 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static rx.Observable.just;
+
+/**
+ * Resolved snapshot builds by [groupId]:[artifactId]:[version]. Entries are used for maven.repo.metadata.ttl ms and
+ * revalidated with a conditional request afterwards, concurrent lookups of the same snapshot share one request.
+ */
+public class MetadataCache {
+    private static final Logger LOG = LoggerFactory.getLogger(MetadataCache.class);
+    private static final int SNAPSHOT_SUFFIX = "SNAPSHOT".length();
+
+    private final DeployConfig config;
+    private final RepositoryHttpClient httpClient;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Observable<String>> pending = new ConcurrentHashMap<>();
+
+    public MetadataCache(DeployConfig config, RepositoryHttpClient httpClient) {
+        this.config = config;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * @return the timestamped version of the latest build of a snapshot.
+     */
+    public Observable<String> resolve(ModuleRequest request) {
+        final String key = request.getGroupId() + ":" + request.getArtifactId() + ":" + request.getVersion();
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.checked < config.getMavenMetadataTtl()) {
+            LOG.info("[{} - {}]: Using cached metadata for {}.", request.getLogName(), request.getId(), request.getModuleId());
+            return just(toVersion(request.getVersion(), entry.build));
+        }
+        final URI location = config.getNexusUrl().resolve(config.getNexusUrl().getPath() + "/" + request.getMetadataLocation());
+        return pending.computeIfAbsent(key, k -> httpClient.rxExecute(() -> fetch(k, location))
+                .doOnTerminate(() -> pending.remove(k))
+                .cache())
+                .map(build -> toVersion(request.getVersion(), build))
+                .doOnNext(version -> LOG.info("[{} - {}]: Resolved {} to {}.", request.getLogName(), request.getId(), request.getModuleId(), version));
+    }
+
+    private String fetch(String key, URI location) throws IOException {
+        Entry entry = entries.get(key);
+        RepositoryHttpClient.ParsedResponse<String> response = httpClient.getParsed(location,
+                entry != null ? entry.etag : null, entry != null ? entry.lastModified : null, MavenMetadataParser::parseSnapshotBuild);
+        if (response == null) {
+            if (entry == null) {
+                throw new IOException("Unexpected not modified response for " + location);
+            }
+            LOG.debug("Metadata {} not modified.", location);
+            entries.put(key, new Entry(entry.build, entry.etag, entry.lastModified));
+            return entry.build;
+        }
+        if (response.getValue() == null) {
+            throw new IllegalStateException("No snapshot build in metadata " + location);
+        }
+        entries.put(key, new Entry(response.getValue(), response.getEtag(), response.getLastModified()));
+        return response.getValue();
+    }
+
+    private static String toVersion(String version, String build) {
+        return version.substring(0, version.length() - SNAPSHOT_SUFFIX) + build;
+    }
+
+    private static final class Entry {
+        private final String build;
+        private final String etag;
+        private final String lastModified;
+        private final long checked;
+
+        private Entry(String build, String etag, String lastModified) {
+            this.build = build;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.checked = System.currentTimeMillis();
+        }
+    }
+}
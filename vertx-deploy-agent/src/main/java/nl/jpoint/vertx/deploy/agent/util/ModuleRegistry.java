@@ -0,0 +1,227 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.rxjava.core.Vertx;
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In memory view of the running modules. The registry is updated by the agent when it starts or stops a module and is
+ * reconciled with the output of 'vertx list' on an interval or on demand. The process of each module is watched, so
+ * a module that exits is removed from the registry right away.
+ */
+public class ModuleRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(ModuleRegistry.class);
+
+    private final Vertx rxVertx;
+    private final ProcessUtils processUtils;
+    private final WorkerPool workerPool;
+    private final long reconcileInterval;
+    private final Map<String, String> modules = new ConcurrentHashMap<>();
+    private final Map<String, ProcessHandle> processes = new ConcurrentHashMap<>();
+    private final Map<String, String> deployments = new ConcurrentHashMap<>();
+    private final Map<String, Long> changed = new ConcurrentHashMap<>();
+    private volatile boolean reconciled = false;
+    private long timerId = -1;
+
+    public ModuleRegistry(io.vertx.core.Vertx vertx, DeployConfig config, WorkerPool workerPool) {
+        this.rxVertx = new Vertx(vertx);
+        this.processUtils = new ProcessUtils(config);
+        this.workerPool = workerPool;
+        this.reconcileInterval = config.getModuleReconcileInterval();
+    }
+
+    public void start() {
+        if (reconcileInterval > 0) {
+            timerId = rxVertx.setPeriodic(reconcileInterval, id -> rxReconcile().subscribe(x -> {
+            }, t -> LOG.warn("[{}]: Failed to reconcile running modules {}", LogConstants.STARTUP, t.getMessage())));
+        }
+    }
+
+    public void stop() {
+        if (timerId != -1) {
+            rxVertx.cancelTimer(timerId);
+        }
+    }
+
+    public Observable<Map<String, String>> rxReconcile() {
+        return workerPool.rxExecute("reconcile modules", this::reconcile);
+    }
+
+    /**
+     * Modules that are started or stopped while 'vertx list' runs are left as registered, the listing does not reflect
+     * them yet.
+     */
+    public synchronized Map<String, String> reconcile() {
+        long started = System.nanoTime();
+        Map<String, String> running = processUtils.listInstalledAndRunningModules();
+        Map<String, ProcessHandle> found = processUtils.findProcesses();
+        deployments.values().retainAll(rxVertx.deploymentIDs());
+        modules.keySet().removeIf(mavenId -> !running.containsKey(mavenId) && !deployments.containsKey(mavenId) && !changedSince(mavenId, started));
+        processes.keySet().removeIf(mavenId -> !running.containsKey(mavenId) && !changedSince(mavenId, started));
+        running.forEach((mavenId, version) -> {
+            if (changedSince(mavenId, started)) {
+                return;
+            }
+            modules.put(mavenId, version);
+            ProcessHandle handle = found.get(mavenId + ":" + version);
+            if (handle != null && !handle.equals(processes.get(mavenId))) {
+                watch(mavenId, version, handle);
+            }
+        });
+        reconciled = true;
+        LOG.debug("[{}]: Reconciled running modules {}", LogConstants.STARTUP, running);
+        return new HashMap<>(modules);
+    }
+
+    public Map<String, String> getRunningModules() {
+        if (!reconciled) {
+            return reconcile();
+        }
+        return new HashMap<>(modules);
+    }
+
+    public List<String> listModules() {
+        return getRunningModules().entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + entry.getValue())
+                .collect(Collectors.toList());
+    }
+
+    public Observable<List<String>> rxListModules() {
+        return workerPool.rxExecute("list modules", this::listModules);
+    }
+
+    public String getRunningVersion(DeployApplicationRequest request) {
+        return getRunningModules().get(request.getMavenArtifactId());
+    }
+
+    /**
+     * Uses the cached state, a module that is registered as running but no longer has a process is dropped. Runs on the
+     * worker pool as the first call reconciles with 'vertx list'.
+     */
+    public Observable<DeployApplicationRequest> checkModuleRunning(DeployApplicationRequest request) {
+        return workerPool.rxExecute("check module " + request.getModuleId(), () -> {
+            Map<String, String> runningModules = getRunningModules();
+            String version = runningModules.get(request.getMavenArtifactId());
+            if (version != null && !isAlive(request.getMavenArtifactId() + ":" + version)) {
+                LOG.info("[{} - {}]: Module {} is no longer running.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getMavenArtifactId());
+                modules.remove(request.getMavenArtifactId(), version);
+                runningModules.remove(request.getMavenArtifactId());
+            }
+            request.setRunning(runningModules.containsKey(request.getMavenArtifactId()));
+            request.setInstalled(request.getVersion().equals(runningModules.get(request.getMavenArtifactId())));
+            return request;
+        });
+    }
+
+    /**
+     * Checks the watched process of the module, or the process table if the module is not watched, without forking
+     * 'vertx list'.
+     */
+    public boolean isAlive(String moduleId) {
+        String[] ids = moduleId.split(":", 3);
+        String deploymentId = ids.length == 3 && ids[2].equals(modules.get(ids[0] + ":" + ids[1])) ? deployments.get(ids[0] + ":" + ids[1]) : null;
+        if (deploymentId != null) {
+            return rxVertx.deploymentIDs().contains(deploymentId);
+        }
+        return findProcess(moduleId).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    public Optional<ProcessHandle> findProcess(String moduleId) {
+        ProcessHandle handle = getProcess(moduleId);
+        return handle != null ? Optional.of(handle) : processUtils.findProcess(moduleId);
+    }
+
+    public Observable<Optional<ProcessHandle>> rxFindProcess(String moduleId) {
+        return workerPool.rxExecute("find process " + moduleId, () -> findProcess(moduleId));
+    }
+
+    public ProcessHandle getProcess(String moduleId) {
+        String[] ids = moduleId.split(":", 3);
+        if (ids.length != 3 || !ids[2].equals(modules.get(ids[0] + ":" + ids[1]))) {
+            return null;
+        }
+        return processes.get(ids[0] + ":" + ids[1]);
+    }
+
+    public JsonObject getProcessInfo() {
+        JsonObject info = new JsonObject();
+        modules.forEach((mavenId, version) -> {
+            ProcessHandle handle = processes.get(mavenId);
+            if (deployments.containsKey(mavenId)) {
+                info.put(mavenId + ":" + version, new JsonObject().put("deploymentId", deployments.get(mavenId)));
+            } else {
+                info.put(mavenId + ":" + version, handle != null ? ProcessUtils.describe(handle) : new JsonObject());
+            }
+        });
+        return info;
+    }
+
+    /**
+     * Registers a started module and watches its process.
+     *
+     * @return the process of the module, if it could be found.
+     */
+    public Optional<ProcessHandle> markStarted(DeployApplicationRequest request) {
+        changed.put(request.getMavenArtifactId(), System.nanoTime());
+        modules.put(request.getMavenArtifactId(), request.getVersion());
+        Optional<ProcessHandle> handle = processUtils.findProcess(request.getModuleId());
+        if (handle.isPresent()) {
+            if (!handle.get().equals(processes.get(request.getMavenArtifactId()))) {
+                watch(request.getMavenArtifactId(), request.getVersion(), handle.get());
+            }
+        } else {
+            LOG.warn("[{} - {}]: Unable to find process of module {}.", LogConstants.DEPLOY_REQUEST, request.getId(), request.getModuleId());
+        }
+        return handle;
+    }
+
+    public Observable<Optional<ProcessHandle>> rxMarkStarted(DeployApplicationRequest request) {
+        return workerPool.rxExecute("register module " + request.getModuleId(), () -> markStarted(request));
+    }
+
+    /**
+     * Registers a module that is deployed as verticle in the agent.
+     */
+    public void markDeployed(DeployApplicationRequest request, String deploymentId) {
+        changed.put(request.getMavenArtifactId(), System.nanoTime());
+        modules.put(request.getMavenArtifactId(), request.getVersion());
+        deployments.put(request.getMavenArtifactId(), deploymentId);
+    }
+
+    public String getDeploymentId(DeployApplicationRequest request) {
+        return deployments.get(request.getMavenArtifactId());
+    }
+
+    public void markStopped(DeployApplicationRequest request) {
+        changed.put(request.getMavenArtifactId(), System.nanoTime());
+        modules.remove(request.getMavenArtifactId());
+        processes.remove(request.getMavenArtifactId());
+        deployments.remove(request.getMavenArtifactId());
+    }
+
+    private boolean changedSince(String mavenId, long started) {
+        Long time = changed.get(mavenId);
+        return time != null && time - started >= 0;
+    }
+
+    private void watch(String mavenId, String version, ProcessHandle handle) {
+        processes.put(mavenId, handle);
+        handle.onExit().thenAccept(exited -> {
+            if (processes.remove(mavenId, exited)) {
+                modules.remove(mavenId, version);
+                LOG.info("[{}]: Process {} of module {}:{} exited.", LogConstants.STARTUP, exited.pid(), mavenId, version);
+            }
+        });
+    }
+}
@@ -4,21 +4,39 @@ import io.vertx.rxjava.core.Vertx;
 import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import rx.Emitter;
 import rx.Observable;
 
-import java.io.*;
-
-import static rx.Observable.just;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Runs a process and emits its exit code once it exits. The merged stdout and stderr are pumped to the log while the
+ * process runs, so a process writing a lot of output can not block on a full pipe. The output of all commands is read
+ * on a small shared pool of named threads.
+ */
 public class ObservableCommand<R extends ModuleRequest> {
 
     private static final Logger LOG = LoggerFactory.getLogger(ObservableCommand.class);
-    private static final Long POLLING_INTERVAL_IN_MS = 500L;
+    private static final int TAIL_LINES = 20;
+    private static final int MAX_LINE_LENGTH = 2048;
+    private static final long DRAIN_TIMEOUT_IN_MS = 1000L;
+    private static final int OUTPUT_THREADS = 8;
+    private static final AtomicInteger OUTPUT_THREAD_COUNT = new AtomicInteger();
+    private static final ThreadPoolExecutor OUTPUT_POOL = outputPool();
     private final Integer expectedResultCode;
     private final Vertx rxVertx;
     private final R request;
-    private Process process;
 
     public ObservableCommand(R request, Integer expectedResultCode, Vertx vertx) {
         this.request = request;
@@ -27,64 +45,77 @@ public class ObservableCommand<R extends ModuleRequest> {
     }
 
     public Observable<Integer> execute(ProcessBuilder builder) {
-        return observableCommand(builder)
-                .flatMap(x -> waitForExit())
-                .flatMap(x -> {
-                    if (process.exitValue() != expectedResultCode) {
-                        throw new IllegalStateException("Error executing process");
-                    }
-                    return just(x);
-                });
-    }
-
-    private Observable<Integer> waitForExit() {
-        return rxVertx.timerStream(POLLING_INTERVAL_IN_MS).toObservable()
-                .flatMap(x -> {
-                    if (process.isAlive()) {
-                        return waitForExit();
-                    } else {
-                        if (process.exitValue() != expectedResultCode) {
-                            printStream(process.getInputStream(), false);
-                            throw new IllegalStateException(printStream(process.getErrorStream(), true));
-                        } else {
-                            printStream(process.getInputStream(), false);
-                        }
-                        return just(process.exitValue());
-                    }
-                });
-    }
-
-    private Observable<String> observableCommand(ProcessBuilder builder) {
-        return Observable.create(subscriber -> {
-            process = null;
+        return Observable.defer(() -> {
+            Process process;
             try {
                 builder.directory(new File(System.getProperty("java.io.tmpdir")));
+                builder.redirectErrorStream(true);
                 process = builder.start();
             } catch (IOException e) {
-                subscriber.onError(e);
+                return Observable.error(e);
             }
-            subscriber.onNext("Done");
-            subscriber.onCompleted();
-        }, Emitter.BackpressureMode.NONE);
+            OutputPump out = new OutputPump(process.getInputStream());
+            OUTPUT_POOL.execute(out);
+            CompletableFuture<Integer> exit = process.onExit()
+                    .thenCompose(exited -> out.done
+                            .completeOnTimeout(null, DRAIN_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS)
+                            .thenApply(x -> exited.exitValue()));
+            return ProcessUtils.onExit(rxVertx, exit)
+                    .map(exitCode -> {
+                        if (!expectedResultCode.equals(exitCode)) {
+                            throw new IllegalStateException("Error executing process, exit code " + exitCode + " " + out.tail());
+                        }
+                        return exitCode;
+                    });
+        });
+    }
+
+    private static ThreadPoolExecutor outputPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(OUTPUT_THREADS, OUTPUT_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "vertx-deploy-command-" + OUTPUT_THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 
-    private String printStream(InputStream stream, boolean error) {
-        if (stream == null) {
-            return null;
+    private class OutputPump implements Runnable {
+        private final InputStream stream;
+        private final Deque<String> tail = new ArrayDeque<>(TAIL_LINES);
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private OutputPump(InputStream stream) {
+            this.stream = stream;
         }
-        String line;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
-            while ((line = reader.readLine()) != null) {
-                if (error) {
-                    LOG.error("[{} - {}]: Command output -> '{}'", LogConstants.CONSOLE_COMMAND, request.getId(), line);
-                } else {
+
+        @Override
+        public void run() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() > MAX_LINE_LENGTH) {
+                        line = line.substring(0, MAX_LINE_LENGTH) + "...";
+                    }
                     LOG.info("[{} - {}]: Command output -> '{}'", LogConstants.CONSOLE_COMMAND, request.getId(), line);
+                    synchronized (tail) {
+                        if (tail.size() == TAIL_LINES) {
+                            tail.removeFirst();
+                        }
+                        tail.addLast(line);
+                    }
                 }
+            } catch (IOException e) {
+                LOG.debug("[{} - {}]: Stopped reading command output -> '{}'", LogConstants.CONSOLE_COMMAND, request.getId(), e.getMessage());
+            } finally {
+                done.complete(null);
+            }
+        }
+
+        private String tail() {
+            synchronized (tail) {
+                return String.join(System.lineSeparator(), tail);
             }
-            return line;
-        } catch (Exception e) {
-            LOG.error(e.getMessage(), e);
-            throw new IllegalStateException(e);
         }
     }
 }
@@ -1,11 +1,14 @@
 package nl.jpoint.vertx.deploy.agent.util;
 
 import io.vertx.core.json.JsonObject;
+import io.vertx.rxjava.core.Context;
+import io.vertx.rxjava.core.Vertx;
 import nl.jpoint.vertx.deploy.agent.Constants;
 import nl.jpoint.vertx.deploy.agent.DeployConfig;
 import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rx.Emitter;
 import rx.Observable;
 
 import java.io.BufferedReader;
@@ -13,8 +16,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -29,15 +35,22 @@ public class ProcessUtils {
     private static final String SELF = "nl.jpoint.vertx-deploy-tools:vertx-deploy-agent:";
     private static final String MAVEN_PATTERN = "maven:([^\\s]+)";
     private static final String MODULE_PATTERN = "([^\\s]+):([^\\s]+):([^\\s]+)";
+    private static final String VERTX_ID_PATTERN = "-Dvertx\\.id=([^\\s]+)";
+    private static final String PID = "pid";
+    private static final String STARTED = "started";
+    private static final String ALIVE = "alive";
+    private static final String CPU = "cpu";
     private final Path vertxHome;
     private final Pattern mavenPattern;
     private final Pattern modulePattern;
+    private final Pattern vertxIdPattern;
 
 
     public ProcessUtils(DeployConfig config) {
         vertxHome = config.getVertxHome();
         mavenPattern = Pattern.compile(MAVEN_PATTERN);
         modulePattern = Pattern.compile(MODULE_PATTERN);
+        vertxIdPattern = Pattern.compile(VERTX_ID_PATTERN);
     }
 
     public Map<String, String> listInstalledAndRunningModules() {
@@ -104,4 +117,72 @@ public class ProcessUtils {
     public String getRunningVersion(DeployApplicationRequest request) {
         return listInstalledAndRunningModules().get(request.getMavenArtifactId());
     }
+
+    /**
+     * Looks up the process started with the given vertx id in the process table, without forking 'vertx list'.
+     */
+    public Optional<ProcessHandle> findProcess(String moduleId) {
+        return Optional.ofNullable(findProcesses().get(moduleId));
+    }
+
+    /**
+     * Scans the process table once for all processes started with a vertx id.
+     */
+    public Map<String, ProcessHandle> findProcesses() {
+        Map<String, ProcessHandle> processes = new HashMap<>();
+        ProcessHandle.allProcesses().forEach(handle -> handle.info().commandLine().ifPresent(commandLine -> {
+            Matcher matcher = vertxIdPattern.matcher(commandLine);
+            if (matcher.find() && !matcher.group(1).contains(SELF)) {
+                processes.putIfAbsent(matcher.group(1), handle);
+            }
+        }));
+        return processes;
+    }
+
+    public static JsonObject toRunInfo(ProcessHandle handle) {
+        JsonObject info = new JsonObject().put(PID, handle.pid());
+        handle.info().startInstant().ifPresent(started -> info.put(STARTED, started.toEpochMilli()));
+        return info;
+    }
+
+    /**
+     * Returns the process from a run file, as long as it is alive and was started at the recorded time so a reused pid
+     * is not mistaken for the application.
+     */
+    public static Optional<ProcessHandle> fromRunInfo(JsonObject info) {
+        if (info == null || info.getLong(PID) == null) {
+            return Optional.empty();
+        }
+        return ProcessHandle.of(info.getLong(PID))
+                .filter(ProcessHandle::isAlive)
+                .filter(handle -> !info.containsKey(STARTED) || handle.info().startInstant()
+                        .map(started -> started.toEpochMilli() == info.getLong(STARTED))
+                        .orElse(true));
+    }
+
+    /**
+     * Pid, start time, cpu time and liveness of a process. The command line is left out on purpose, it holds the
+     * remote repository credentials.
+     */
+    public static JsonObject describe(ProcessHandle handle) {
+        ProcessHandle.Info info = handle.info();
+        JsonObject description = toRunInfo(handle).put(ALIVE, handle.isAlive());
+        info.totalCpuDuration().ifPresent(cpu -> description.put(CPU, cpu.toMillis()));
+        return description;
+    }
+
+    /**
+     * Bridges the exit of a process to an observable that emits on the vertx context.
+     */
+    public static <T> Observable<T> onExit(Vertx rxVertx, CompletableFuture<T> exit) {
+        Context context = rxVertx.getOrCreateContext();
+        return Observable.create(emitter -> exit.whenComplete((result, error) -> context.runOnContext(v -> {
+            if (error != null) {
+                emitter.onError(error);
+            } else {
+                emitter.onNext(result);
+                emitter.onCompleted();
+            }
+        })), Emitter.BackpressureMode.BUFFER);
+    }
 }
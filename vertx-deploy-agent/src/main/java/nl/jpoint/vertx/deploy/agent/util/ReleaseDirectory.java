@@ -0,0 +1,104 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Extracted releases of a base location are kept in a sibling releases directory, the base location itself is a
+ * symbolic link to the active release which is replaced atomically.
+ */
+public class ReleaseDirectory {
+    private static final Logger LOG = LoggerFactory.getLogger(ReleaseDirectory.class);
+    private static final String COMPLETE = ".complete";
+
+    private final Path basePath;
+    private final Path releases;
+    private final int keep;
+
+    public ReleaseDirectory(Path basePath, int keep) {
+        this.basePath = basePath.toAbsolutePath().normalize();
+        this.releases = this.basePath.resolveSibling("." + this.basePath.getFileName() + "-releases");
+        this.keep = keep;
+    }
+
+    public Optional<Path> getRelease(String name) {
+        Path release = releases.resolve(name);
+        return release.resolveSibling(name + COMPLETE).toFile().exists() && release.toFile().isDirectory() ? Optional.of(release) : Optional.empty();
+    }
+
+    public Path createRelease(String name) throws IOException {
+        Path release = releases.resolve(name);
+        Files.deleteIfExists(release.resolveSibling(name + COMPLETE));
+        if (release.toFile().exists()) {
+            deleteRecursive(release);
+        }
+        Files.createDirectories(release);
+        return release;
+    }
+
+    public void completeRelease(Path release) throws IOException {
+        Files.createFile(release.resolveSibling(release.getFileName() + COMPLETE));
+    }
+
+    public void activate(Path release) throws IOException {
+        Path link = basePath.resolveSibling("." + basePath.getFileName() + ".link");
+        Files.deleteIfExists(link);
+        Files.createSymbolicLink(link, release);
+        if (Files.exists(basePath, LinkOption.NOFOLLOW_LINKS) && !Files.isSymbolicLink(basePath)) {
+            Path previous = releases.resolve("previous-" + System.currentTimeMillis());
+            LOG.info("Moving existing base location {} to {}.", basePath, previous);
+            Files.move(basePath, previous);
+        }
+        Files.move(link, basePath, StandardCopyOption.ATOMIC_MOVE);
+        Files.setLastModifiedTime(release, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    public Optional<Path> getActive() {
+        try {
+            return Files.isSymbolicLink(basePath) ? Optional.of(Files.readSymbolicLink(basePath)) : Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Removes all but the most recent releases, the active release is never removed.
+     */
+    public void prune() {
+        Optional<Path> active = getActive();
+        try (Stream<Path> stream = Files.list(releases)) {
+            List<Path> candidates = stream
+                    .filter(path -> path.toFile().isDirectory())
+                    .filter(path -> !active.isPresent() || !path.equals(active.get()))
+                    .sorted(Comparator.comparingLong((Path path) -> path.toFile().lastModified()).reversed())
+                    .collect(Collectors.toList());
+            for (Path release : candidates.subList(Math.min(keep, candidates.size()), candidates.size())) {
+                LOG.info("Removing release {}.", release);
+                Files.deleteIfExists(release.resolveSibling(release.getFileName() + COMPLETE));
+                deleteRecursive(release);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to prune releases in {} : {}", releases, e.getMessage());
+        }
+    }
+
+    private void deleteRecursive(Path path) throws IOException {
+        try (Stream<Path> stream = Files.walk(path)) {
+            for (Path file : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.WorkerExecutor;
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+public class RepositoryHttpClient {
+    private static final Logger LOG = LoggerFactory.getLogger(RepositoryHttpClient.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_TIMEOUT_IN_S = 60L;
+    private static final String DOWNLOAD_POOL = "vertx-deploy-download";
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final WorkerExecutor downloadExecutor;
+
+    public RepositoryHttpClient(io.vertx.core.Vertx vertx, DeployConfig config) {
+        CredentialsProvider provider = new BasicCredentialsProvider();
+        provider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(config.getHttpAuthUser(), config.getHttpAuthPassword()));
+
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMavenRepoMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMavenRepoMaxConnections());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getMavenRepoConnectTimeout())
+                .setConnectionRequestTimeout(config.getMavenRepoConnectTimeout())
+                .setSocketTimeout(config.getMavenRepoReadTimeout())
+                .build();
+
+        this.client = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultCredentialsProvider(provider)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_TIMEOUT_IN_S, TimeUnit.SECONDS)
+                .build();
+        this.downloadExecutor = new Vertx(vertx).createSharedWorkerExecutor(DOWNLOAD_POOL, config.getArtifactDownloadParallelism());
+    }
+
+    public <T> Observable<T> rxExecute(Callable<T> download) {
+        return downloadExecutor.<T>rxExecuteBlocking(future -> {
+            try {
+                future.complete(download.call());
+            } catch (Exception e) {
+                future.fail(e);
+            }
+        }, false).toObservable();
+    }
+
+    public String getString(URI location) throws IOException {
+        try (CloseableHttpResponse response = client.execute(new HttpGet(location))) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_NOT_FOUND) {
+                EntityUtils.consume(response.getEntity());
+                return null;
+            }
+            if (status != HttpStatus.SC_OK || response.getEntity() == null) {
+                throw new IOException("Unexpected response " + status + " while downloading " + location);
+            }
+            return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public DownloadResult download(URI location, Path target, String etag, String lastModified) throws IOException {
+        HttpGet get = new HttpGet(location);
+        if (etag != null) {
+            get.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try (CloseableHttpResponse response = client.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_NOT_MODIFIED) {
+                return DownloadResult.NOT_MODIFIED;
+            }
+            HttpEntity entity = response.getEntity();
+            if (status != HttpStatus.SC_OK || entity == null) {
+                throw new IOException("Unexpected response " + status + " while downloading " + location);
+            }
+            MessageDigest sha1 = newDigest("SHA-1");
+            MessageDigest sha256 = newDigest("SHA-256");
+            long size = 0;
+            try (InputStream in = entity.getContent();
+                 OutputStream out = Files.newOutputStream(partial)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    sha1.update(buffer, 0, n);
+                    sha256.update(buffer, 0, n);
+                    size += n;
+                }
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Downloaded {}, connection pool {}", location, getPoolStats().encode());
+            }
+            return new DownloadResult(false, headerValue(response, HttpHeaders.ETAG), headerValue(response, HttpHeaders.LAST_MODIFIED),
+                    toHex(sha1.digest()), toHex(sha256.digest()), size);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Conditional GET that parses the response straight from the stream.
+     *
+     * @return the parsed response, or null when the resource was not modified.
+     */
+    public <T> ParsedResponse<T> getParsed(URI location, String etag, String lastModified, ResponseParser<T> parser) throws IOException {
+        HttpGet get = new HttpGet(location);
+        if (etag != null) {
+            get.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        try (CloseableHttpResponse response = client.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_NOT_MODIFIED) {
+                return null;
+            }
+            HttpEntity entity = response.getEntity();
+            if (status != HttpStatus.SC_OK || entity == null) {
+                EntityUtils.consume(entity);
+                throw new IOException("Unexpected response " + status + " while downloading " + location);
+            }
+            try (InputStream in = entity.getContent()) {
+                return new ParsedResponse<>(parser.parse(in), headerValue(response, HttpHeaders.ETAG), headerValue(response, HttpHeaders.LAST_MODIFIED));
+            }
+        }
+    }
+
+    public JsonObject getPoolStats() {
+        PoolStats stats = connectionManager.getTotalStats();
+        return new JsonObject()
+                .put("leased", stats.getLeased())
+                .put("available", stats.getAvailable())
+                .put("pending", stats.getPending())
+                .put("max", stats.getMax());
+    }
+
+    private static String headerValue(CloseableHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static MessageDigest newDigest(String algorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    public void close() {
+        downloadExecutor.close();
+        try {
+            client.close();
+        } catch (IOException e) {
+            LOG.warn("Error while closing http client {}", e.getMessage());
+        }
+    }
+
+    public static final class DownloadResult {
+        private static final DownloadResult NOT_MODIFIED = new DownloadResult(true, null, null, null, null, 0);
+
+        private final boolean notModified;
+        private final String etag;
+        private final String lastModified;
+        private final String sha1;
+        private final String sha256;
+        private final long size;
+
+        private DownloadResult(boolean notModified, String etag, String lastModified, String sha1, String sha256, long size) {
+            this.notModified = notModified;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ResponseParser<T> {
+        T parse(InputStream in) throws IOException;
+    }
+
+    public static final class ParsedResponse<T> {
+        private final T value;
+        private final String etag;
+        private final String lastModified;
+
+        private ParsedResponse(T value, String etag, String lastModified) {
+            this.value = value;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
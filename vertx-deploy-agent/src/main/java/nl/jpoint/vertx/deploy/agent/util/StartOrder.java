@@ -0,0 +1,44 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Groups applications in stages based on the START_AFTER service defaults, applications in a stage only start after
+ * the applications in the previous stages. Dependencies on applications that are not part of the deploy are ignored.
+ */
+public final class StartOrder {
+    private static final Logger LOG = LoggerFactory.getLogger(StartOrder.class);
+
+    private StartOrder() {
+        // Hide
+    }
+
+    public static List<List<DeployApplicationRequest>> stages(List<DeployApplicationRequest> requests) {
+        Set<String> pending = requests.stream()
+                .map(DeployApplicationRequest::getMavenArtifactId)
+                .collect(Collectors.toSet());
+        List<DeployApplicationRequest> remaining = new ArrayList<>(requests);
+        List<List<DeployApplicationRequest>> stages = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            List<DeployApplicationRequest> stage = remaining.stream()
+                    .filter(request -> request.getStartAfter().stream()
+                            .noneMatch(mavenId -> !mavenId.equals(request.getMavenArtifactId()) && pending.contains(mavenId)))
+                    .collect(Collectors.toList());
+            if (stage.isEmpty()) {
+                LOG.warn("Circular START_AFTER between {}, starting them together.", pending);
+                stage = new ArrayList<>(remaining);
+            }
+            remaining.removeAll(stage);
+            stage.forEach(request -> pending.remove(request.getMavenArtifactId()));
+            stages.add(stage);
+        }
+        return stages;
+    }
+}
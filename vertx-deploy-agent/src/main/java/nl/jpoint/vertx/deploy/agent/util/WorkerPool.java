@@ -0,0 +1,132 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.WorkerExecutor;
+import nl.jpoint.vertx.deploy.agent.DeployConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Named, bounded pool for process, file system and extraction work so it never runs on the event loop. Workers that
+ * run longer than worker.max.execute.time are reported by the vertx blocked thread checker, the event loop itself is
+ * probed every second and a probe that runs late is logged together with the tasks that were running.
+ */
+public class WorkerPool {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerPool.class);
+    private static final String WORKER_POOL = "vertx-deploy-worker";
+    private static final long PROBE_INTERVAL_IN_MS = 1000L;
+    private static final long LAG_WARN_IN_MS = 200L;
+
+    private final Vertx rxVertx;
+    private final WorkerExecutor executor;
+    private final ForkJoinPool extractPool;
+    private final int size;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, String> running = new ConcurrentHashMap<>();
+    private final Map<Path, Lock> locationLocks = new ConcurrentHashMap<>();
+    private volatile long lastLag = 0;
+    private long timerId = -1;
+
+    public WorkerPool(io.vertx.core.Vertx vertx, DeployConfig config) {
+        this.rxVertx = new Vertx(vertx);
+        this.size = config.getWorkerPoolSize();
+        this.executor = rxVertx.createSharedWorkerExecutor(WORKER_POOL, size, config.getWorkerMaxExecuteTime(), TimeUnit.SECONDS);
+        this.extractPool = config.getArtifactExtractParallelism() > 1 ? new ForkJoinPool(config.getArtifactExtractParallelism()) : null;
+    }
+
+    public void start() {
+        probe(System.currentTimeMillis());
+    }
+
+    public void stop() {
+        if (timerId != -1) {
+            rxVertx.cancelTimer(timerId);
+        }
+        executor.close();
+        if (extractPool != null) {
+            extractPool.shutdown();
+        }
+    }
+
+    /**
+     * Pool shared by all parallel zip extracts, null when artifact.extract.parallelism is 1.
+     */
+    public ForkJoinPool getExtractPool() {
+        return extractPool;
+    }
+
+    /**
+     * Lock of an extract location, extractions run in parallel unless they write to the same base location.
+     */
+    public Lock getLocationLock(Path location) {
+        return locationLocks.computeIfAbsent(location.toAbsolutePath().normalize(), key -> new ReentrantLock());
+    }
+
+    public <T> Observable<T> rxExecute(String task, Callable<T> callable) {
+        return rxExecute(task, false, callable);
+    }
+
+    /**
+     * Runs the task on the pool and emits its result on the calling context, ordered tasks of the same context run one
+     * after the other.
+     */
+    public <T> Observable<T> rxExecute(String task, boolean ordered, Callable<T> callable) {
+        return Observable.defer(() -> {
+            queued.incrementAndGet();
+            return executor.<T>rxExecuteBlocking(future -> {
+                queued.decrementAndGet();
+                long id = sequence.incrementAndGet();
+                running.put(id, task);
+                try {
+                    future.complete(callable.call());
+                    completed.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    future.fail(e);
+                } finally {
+                    running.remove(id);
+                }
+            }, ordered).toObservable();
+        });
+    }
+
+    public JsonObject getStats() {
+        return new JsonObject()
+                .put("size", size)
+                .put("active", running.size())
+                .put("queued", queued.get())
+                .put("completed", completed.get())
+                .put("failed", failed.get())
+                .put("eventLoopLag", lastLag)
+                .put("maxEventLoopLag", maxLag.get());
+    }
+
+    private void probe(long scheduled) {
+        timerId = rxVertx.setTimer(PROBE_INTERVAL_IN_MS, id -> {
+            long now = System.currentTimeMillis();
+            lastLag = Math.max(0L, now - scheduled - PROBE_INTERVAL_IN_MS);
+            maxLag.accumulateAndGet(lastLag, Math::max);
+            if (lastLag > LAG_WARN_IN_MS) {
+                LOG.warn("[{}]: Event loop blocked for {} ms, running worker tasks {}", LogConstants.STARTUP, lastLag, running.values());
+            }
+            probe(now);
+        });
+    }
+}
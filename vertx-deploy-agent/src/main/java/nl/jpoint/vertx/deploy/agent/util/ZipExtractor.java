@@ -0,0 +1,202 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.request.ModuleRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static nl.jpoint.vertx.deploy.agent.util.ArtifactContextUtil.ARTIFACT_CONTEXT;
+
+public class ZipExtractor<T extends ModuleRequest> {
+    private static final Logger LOG = LoggerFactory.getLogger(ZipExtractor.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NO_MODE = -1;
+    private static final int SPLIT_THRESHOLD = 32;
+
+    private final T request;
+    private final ForkJoinPool pool;
+    private final ContentFingerprint fingerprint = ContentFingerprint.CRC_32;
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    public ZipExtractor(T request) {
+        this(request, null);
+    }
+
+    /**
+     * @param pool shared pool to extract large archives in parallel, or null to extract on the calling thread.
+     */
+    public ZipExtractor(T request, ForkJoinPool pool) {
+        this.request = request;
+        this.pool = pool;
+    }
+
+    /**
+     * Extracts all entries from the central directory of the archive, files whose size and crc match the entry are
+     * left untouched. Files recorded in the manifest are checked without reading them, others by comparing the crc
+     * stored in the archive with a fingerprint of the file on disk.
+     * Directories are created up front, so files can be extracted in parallel. The archive is not closed.
+     *
+     * @return true if any file in the output was written.
+     */
+    public boolean extractZip(ZipFile zipFile, Path output, ExtractManifest manifest) {
+        boolean changed;
+        skipped.set(0);
+        try {
+            Files.createDirectories(output);
+            List<ZipEntry> files = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (ARTIFACT_CONTEXT.equals(entry.getName())) {
+                    continue;
+                }
+                Path target = resolve(output, entry);
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                    if (manifest != null) {
+                        manifest.putDirectory(target);
+                    }
+                } else {
+                    Files.createDirectories(target.getParent());
+                    files.add(entry);
+                }
+            }
+            changed = pool != null && files.size() > SPLIT_THRESHOLD
+                    ? extractParallel(zipFile, files, output, manifest)
+                    : extractEntries(zipFile, files, output, manifest);
+        } catch (IOException | UncheckedIOException e) {
+            LOG.error("[{} - {}]: Error while extracting artifact {} -> {}.", request.getLogName(), request.getId(), request.getModuleId(), e.getMessage(), e);
+            throw new IllegalStateException(e);
+        }
+        LOG.debug("[{} - {}]: Skipped {} unchanged files while extracting {}.", request.getLogName(), request.getId(), skipped.get(), request.getModuleId());
+        return changed;
+    }
+
+    private boolean extractParallel(ZipFile zipFile, List<ZipEntry> files, Path output, ExtractManifest manifest) throws IOException {
+        try {
+            return pool.submit(new ExtractTask(zipFile, files, output, manifest)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private boolean extractEntries(ZipFile zipFile, List<ZipEntry> files, Path output, ExtractManifest manifest) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        boolean changed = false;
+        for (ZipEntry entry : files) {
+            Path target = resolve(output, entry);
+            if (isUnchanged(entry, target, manifest)) {
+                skipped.incrementAndGet();
+            } else {
+                writeEntry(zipFile, entry, target, buffer);
+                changed = true;
+            }
+            if (manifest != null) {
+                manifest.putFile(target, entry.getSize(), entry.getCrc(), entry.getTime(), NO_MODE);
+            }
+        }
+        return changed;
+    }
+
+    private Path resolve(Path output, ZipEntry entry) throws IOException {
+        Path target = output.resolve(entry.getName()).normalize();
+        if (!target.startsWith(output.normalize())) {
+            throw new IOException("Entry " + entry.getName() + " is outside of the target dir " + output);
+        }
+        return target;
+    }
+
+    private boolean isUnchanged(ZipEntry entry, Path target, ExtractManifest manifest) throws IOException {
+        if (manifest != null && manifest.isExisting() && manifest.isUnchanged(target, entry.getSize(), entry.getCrc(), entry.getTime(), NO_MODE)) {
+            return true;
+        }
+        if (!target.toFile().isFile() || entry.getSize() < 0 || entry.getCrc() < 0 || Files.size(target) != entry.getSize()) {
+            return false;
+        }
+        if (fingerprint.fingerprint(target) != entry.getCrc()) {
+            return false;
+        }
+        if (manifest != null && entry.getLastModifiedTime() != null) {
+            Files.setLastModifiedTime(target, entry.getLastModifiedTime());
+        }
+        return true;
+    }
+
+    private void writeEntry(ZipFile zipFile, ZipEntry entry, Path target, byte[] buffer) throws IOException {
+        Path temp = target.resolveSibling("." + target.getFileName() + ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (InputStream in = zipFile.getInputStream(entry);
+                 OutputStream out = new CheckedOutputStream(Files.newOutputStream(temp), crc)) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+            if (entry.getCrc() >= 0 && crc.getValue() != entry.getCrc()) {
+                throw new IOException("Crc mismatch for entry " + entry.getName());
+            }
+            if (entry.getLastModifiedTime() != null) {
+                Files.setLastModifiedTime(temp, entry.getLastModifiedTime());
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private class ExtractTask extends RecursiveTask<Boolean> {
+        private final ZipFile zipFile;
+        private final List<ZipEntry> files;
+        private final Path output;
+        private final ExtractManifest manifest;
+
+        private ExtractTask(ZipFile zipFile, List<ZipEntry> files, Path output, ExtractManifest manifest) {
+            this.zipFile = zipFile;
+            this.files = files;
+            this.output = output;
+            this.manifest = manifest;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (files.size() <= SPLIT_THRESHOLD) {
+                try {
+                    return extractEntries(zipFile, files, output, manifest);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = files.size() / 2;
+            ExtractTask left = new ExtractTask(zipFile, files.subList(0, middle), output, manifest);
+            ExtractTask right = new ExtractTask(zipFile, files.subList(middle, files.size()), output, manifest);
+            left.fork();
+            boolean changed = right.compute();
+            return left.join() || changed;
+        }
+    }
+}
@@ -95,6 +95,15 @@ public class RunApplicationTest {
         verify(request).withMainService("my-service");
     }
 
+    @Test
+    public void getOnNextEventsWithStartAfterRequestToContainStartAfter() {
+        when(config.getServiceConfigLocation()).thenReturn("runapplication/startafter/");
+        List<DeployApplicationRequest> result = execute();
+        assertThat(result, hasSize(1));
+
+        verify(request).withStartAfter("group:first, group:second");
+    }
+
     @Test
     public void getMavenCommandNoMainServiceNormalMavenCommand() {
         String result = new RunApplication(Vertx.vertx(), config).getMavenCommand(new DeployApplicationRequest("group", "artifact", "version", "classifier", "type"));
@@ -0,0 +1,58 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.request.DeployArtifactRequest;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactContextUtilTest {
+
+    private final DeployArtifactRequest request = DeployArtifactRequest.build("nl.jpoint", "test", "1.0", null, "zip");
+
+    @Test
+    public void testReadContext() {
+        ArtifactContextUtil context = read("<artifact>\n" +
+                "  <baselocation>/opt/test</baselocation>\n" +
+                "  <checkContent>true</checkContent>\n" +
+                "  <restartCommand>service test restart</restartCommand>\n" +
+                "  <testCommand>service test status</testCommand>\n" +
+                "</artifact>");
+        assertEquals("/opt/test", context.getBaseLocation());
+        assertTrue(context.getCheckConfig());
+        assertEquals("service test restart", context.getRestartCommand());
+        assertEquals("service test status", context.getTestCommand());
+    }
+
+    @Test
+    public void testReadContext_OtherOrder() {
+        ArtifactContextUtil context = read("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<artifact>\n" +
+                "  <testCommand>service test status</testCommand>\n" +
+                "  <unknown><nested>value</nested></unknown>\n" +
+                "  <restartCommand>service test restart</restartCommand>\n" +
+                "  <baselocation>/opt/test</baselocation>\n" +
+                "</artifact>");
+        assertEquals("/opt/test", context.getBaseLocation());
+        assertEquals("service test restart", context.getRestartCommand());
+        assertEquals("service test status", context.getTestCommand());
+    }
+
+    @Test
+    public void testReadContext_MissingElements() {
+        ArtifactContextUtil context = read("<artifact>\n" +
+                "  <baselocation>/opt/test</baselocation>\n" +
+                "</artifact>");
+        assertEquals("/opt/test", context.getBaseLocation());
+        assertFalse(context.getCheckConfig());
+        assertEquals("", context.getRestartCommand());
+        assertEquals("", context.getTestCommand());
+    }
+
+    private ArtifactContextUtil read(String xml) {
+        return new ArtifactContextUtil(request, xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
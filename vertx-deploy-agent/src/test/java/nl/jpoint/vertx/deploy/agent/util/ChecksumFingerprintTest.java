@@ -0,0 +1,39 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChecksumFingerprintTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBufferedFingerprintMatchesCrc32() throws Exception {
+        assertFingerprint(1024 * 1024 + 17);
+    }
+
+    @Test
+    public void testMappedFingerprintMatchesCrc32() throws Exception {
+        assertFingerprint(6 * 1024 * 1024 + 17);
+    }
+
+    private void assertFingerprint(int size) throws Exception {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        Path file = folder.newFile().toPath();
+        Files.write(file, data);
+
+        CRC32 expected = new CRC32();
+        expected.update(data);
+        assertEquals(expected.getValue(), ContentFingerprint.CRC_32.fingerprint(file));
+    }
+}
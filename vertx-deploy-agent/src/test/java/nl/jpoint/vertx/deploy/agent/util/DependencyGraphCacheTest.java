@@ -0,0 +1,57 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyGraphCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip_NoClassifier() throws Exception {
+        assertRoundTrip(new DefaultArtifact("nl.jpoint", "test", "jar", "1.0"));
+    }
+
+    @Test
+    public void testRoundTrip_Classifier() throws Exception {
+        assertRoundTrip(new DefaultArtifact("nl.jpoint", "test", "properties", "zip", "1.0"));
+    }
+
+    @Test
+    public void testSnapshotNotCached() throws Exception {
+        Path file = folder.getRoot().toPath().resolve(".initial.graph");
+        String key = DependencyGraphCache.key("nl.jpoint:test:1.0-SNAPSHOT", DeployType.APPLICATION, false, "", "");
+        new DependencyGraphCache(file).put(key, Collections.singletonList(new DefaultArtifact("nl.jpoint", "test", "jar", "1.0-SNAPSHOT")));
+
+        assertFalse(new DependencyGraphCache(file).get(key).isPresent());
+    }
+
+    private void assertRoundTrip(Artifact artifact) {
+        Path file = folder.getRoot().toPath().resolve(".initial.graph");
+        String key = DependencyGraphCache.key("nl.jpoint:test:1.0", DeployType.APPLICATION, false, "", "");
+        new DependencyGraphCache(file).put(key, Collections.singletonList(artifact));
+
+        Optional<List<Artifact>> cached = new DependencyGraphCache(file).get(key);
+        assertTrue(cached.isPresent());
+        assertEquals(1, cached.get().size());
+        Artifact result = cached.get().get(0);
+        assertEquals(artifact.getGroupId(), result.getGroupId());
+        assertEquals(artifact.getArtifactId(), result.getArtifactId());
+        assertEquals(artifact.getClassifier(), result.getClassifier());
+        assertEquals(artifact.getExtension(), result.getExtension());
+        assertEquals(artifact.getVersion(), result.getVersion());
+    }
+}
@@ -0,0 +1,98 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.request.DeployArtifactRequest;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class GzipExtractorTest {
+
+    private static final long LARGE_ENTRY_SIZE = 3L * 1024 * 1024 * 1024;
+    private static final byte[] CONTEXT = "<artifact><baselocation>/tmp</baselocation></artifact>".getBytes(StandardCharsets.UTF_8);
+    private static final DeployArtifactRequest REQUEST = DeployArtifactRequest.build("nl.jpoint", "test", "1.0", null, "tar.gz");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes and extracts a 3GB entry, only runs with 'mvn -P large-tests test'.
+     */
+    @Test
+    public void testExtractLargeEntry() throws Exception {
+        assumeTrue(Boolean.getBoolean("large.tests"));
+        assumeTrue(folder.getRoot().getUsableSpace() > LARGE_ENTRY_SIZE * 2);
+        Path archive = folder.getRoot().toPath().resolve("large.tar.gz");
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(archive));
+             TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new GzipCompressorOutputStream(out))) {
+            tarOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            writeEntry(tarOut, ArtifactContextUtil.ARTIFACT_CONTEXT, CONTEXT);
+
+            TarArchiveEntry large = new TarArchiveEntry("large.bin");
+            large.setSize(LARGE_ENTRY_SIZE);
+            tarOut.putArchiveEntry(large);
+            byte[] zeros = new byte[1024 * 1024];
+            for (long written = 0; written < LARGE_ENTRY_SIZE; written += zeros.length) {
+                tarOut.write(zeros);
+            }
+            tarOut.closeArchiveEntry();
+
+            writeEntry(tarOut, "small.txt", "small".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Path output = folder.getRoot().toPath().resolve("output");
+        new GzipExtractor<>(REQUEST).extractTar(archive, output);
+
+        assertEquals(LARGE_ENTRY_SIZE, Files.size(output.resolve("large.bin")));
+        assertEquals("small", new String(Files.readAllBytes(output.resolve("small.txt")), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEntryOutsideOutputRejected() throws Exception {
+        Path archive = folder.getRoot().toPath().resolve("escape.tar.gz");
+        try (TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new GzipCompressorOutputStream(Files.newOutputStream(archive)))) {
+            writeEntry(tarOut, ArtifactContextUtil.ARTIFACT_CONTEXT, CONTEXT);
+            writeEntry(tarOut, "../escape.txt", "escape".getBytes(StandardCharsets.UTF_8));
+        }
+        Path output = folder.getRoot().toPath().resolve("output");
+        try {
+            new GzipExtractor<>(REQUEST).extractTar(archive, output);
+        } finally {
+            assertFalse(Files.exists(folder.getRoot().toPath().resolve("escape.txt")));
+        }
+    }
+
+    @Test
+    public void testSpooledEntryWithoutDirectoryEntries() throws Exception {
+        Path archive = folder.getRoot().toPath().resolve("spooled.tar.gz");
+        try (TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new GzipCompressorOutputStream(Files.newOutputStream(archive)))) {
+            writeEntry(tarOut, "lib/nested/file.txt", "nested".getBytes(StandardCharsets.UTF_8));
+            writeEntry(tarOut, ArtifactContextUtil.ARTIFACT_CONTEXT, CONTEXT);
+        }
+        Path output = folder.getRoot().toPath().resolve("output");
+        new GzipExtractor<>(REQUEST).extractTar(archive, context -> output);
+
+        assertEquals("nested", new String(Files.readAllBytes(output.resolve("lib/nested/file.txt")), StandardCharsets.UTF_8));
+    }
+
+    private void writeEntry(TarArchiveOutputStream tarOut, String name, byte[] data) throws Exception {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(data.length);
+        tarOut.putArchiveEntry(entry);
+        tarOut.write(data);
+        tarOut.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,70 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MavenMetadataParserTest {
+
+    @Test
+    public void testParseSnapshotBuild() throws Exception {
+        String metadata = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<metadata modelVersion=\"1.1.0\">\n" +
+                "  <groupId>nl.jpoint</groupId>\n" +
+                "  <artifactId>test</artifactId>\n" +
+                "  <version>1.0-SNAPSHOT</version>\n" +
+                "  <versioning>\n" +
+                "    <snapshot>\n" +
+                "      <timestamp>20200101.120000</timestamp>\n" +
+                "      <buildNumber>42</buildNumber>\n" +
+                "    </snapshot>\n" +
+                "    <lastUpdated>20200101120000</lastUpdated>\n" +
+                "  </versioning>\n" +
+                "</metadata>";
+        assertEquals("20200101.120000-42", parse(metadata));
+    }
+
+    @Test
+    public void testParseSnapshotBuild_NoSnapshot() throws Exception {
+        String metadata = "<metadata>\n" +
+                "  <groupId>nl.jpoint</groupId>\n" +
+                "  <artifactId>test</artifactId>\n" +
+                "  <versioning>\n" +
+                "    <latest>1.0</latest>\n" +
+                "    <versions>\n" +
+                "      <version>1.0</version>\n" +
+                "    </versions>\n" +
+                "  </versioning>\n" +
+                "</metadata>";
+        assertNull(parse(metadata));
+    }
+
+    @Test
+    public void testParseSnapshotBuild_SnapshotVersionsFirst() throws Exception {
+        String metadata = "<metadata>\n" +
+                "  <versioning>\n" +
+                "    <snapshotVersions>\n" +
+                "      <snapshotVersion>\n" +
+                "        <extension>jar</extension>\n" +
+                "        <value>1.0-20191231.235959-41</value>\n" +
+                "        <updated>20191231235959</updated>\n" +
+                "      </snapshotVersion>\n" +
+                "    </snapshotVersions>\n" +
+                "    <snapshot>\n" +
+                "      <buildNumber>42</buildNumber>\n" +
+                "      <timestamp>20200101.120000</timestamp>\n" +
+                "    </snapshot>\n" +
+                "  </versioning>\n" +
+                "</metadata>";
+        assertEquals("20200101.120000-42", parse(metadata));
+    }
+
+    private String parse(String metadata) throws IOException {
+        return MavenMetadataParser.parseSnapshotBuild(new ByteArrayInputStream(metadata.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,41 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.request.DeployApplicationRequest;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StartOrderTest {
+
+    @Test
+    public void testStagesFollowStartAfter() {
+        DeployApplicationRequest first = request("first", "");
+        DeployApplicationRequest second = request("second", "group:first");
+        DeployApplicationRequest third = request("third", "group:first, group:unknown");
+        DeployApplicationRequest last = request("last", "group:second,group:third");
+
+        List<List<DeployApplicationRequest>> stages = StartOrder.stages(Arrays.asList(last, third, second, first));
+
+        assertEquals(Arrays.asList(Collections.singletonList(first), Arrays.asList(third, second), Collections.singletonList(last)), stages);
+    }
+
+    @Test
+    public void testCircularStartAfterStartsTogether() {
+        DeployApplicationRequest first = request("first", "group:second");
+        DeployApplicationRequest second = request("second", "group:first");
+
+        List<List<DeployApplicationRequest>> stages = StartOrder.stages(Arrays.asList(first, second));
+
+        assertEquals(Collections.singletonList(Arrays.asList(first, second)), stages);
+    }
+
+    private DeployApplicationRequest request(String artifactId, String startAfter) {
+        DeployApplicationRequest request = new DeployApplicationRequest("group", artifactId, "1.0", null, "jar");
+        request.withStartAfter(startAfter);
+        return request;
+    }
+}
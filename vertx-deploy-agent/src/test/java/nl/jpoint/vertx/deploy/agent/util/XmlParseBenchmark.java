@@ -0,0 +1,90 @@
+package nl.jpoint.vertx.deploy.agent.util;
+
+import nl.jpoint.vertx.deploy.agent.request.DeployArtifactRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse cost of artifact_context.xml and maven-metadata.xml, the dom methods are the XPath implementation the agent
+ * used before. Run with 'mvn -P benchmark test-compile exec:exec' from the agent module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlParseBenchmark {
+
+    private static final byte[] CONTEXT = ("<?xml version=\"1.0\"?>\n<artifact>\n"
+            + "    <baselocation>/tmp/www</baselocation>\n"
+            + "    <checkContent>true</checkContent>\n"
+            + "    <restartCommand>sudo service nginx reload</restartCommand>\n"
+            + "    <testCommand>sudo nginx -t</testCommand>\n"
+            + "</artifact>").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] METADATA = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata modelVersion=\"1.1.0\">\n"
+            + "  <groupId>nl.jpoint</groupId>\n  <artifactId>application</artifactId>\n  <version>1.0.0-SNAPSHOT</version>\n"
+            + "  <versioning>\n    <snapshot>\n      <timestamp>20210301.101010</timestamp>\n      <buildNumber>42</buildNumber>\n    </snapshot>\n"
+            + "    <lastUpdated>20210301101010</lastUpdated>\n    <snapshotVersions>\n"
+            + "      <snapshotVersion>\n        <extension>jar</extension>\n        <value>1.0.0-20210301.101010-42</value>\n"
+            + "        <updated>20210301101010</updated>\n      </snapshotVersion>\n"
+            + "      <snapshotVersion>\n        <extension>pom</extension>\n        <value>1.0.0-20210301.101010-42</value>\n"
+            + "        <updated>20210301101010</updated>\n      </snapshotVersion>\n"
+            + "    </snapshotVersions>\n  </versioning>\n</metadata>").getBytes(StandardCharsets.UTF_8);
+
+    private final DeployArtifactRequest request = DeployArtifactRequest.build("nl.jpoint", "artifact", "1.0.0-SNAPSHOT", null, "zip");
+
+    @Benchmark
+    public String artifactContextDom() throws Exception {
+        XPath xPath = XPathFactory.newInstance().newXPath();
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(CONTEXT));
+        return (String) xPath.compile("/artifact/baselocation/text()").evaluate(document, XPathConstants.STRING)
+                + xPath.compile("/artifact/checkContent/text()").evaluate(document, XPathConstants.STRING)
+                + xPath.compile("/artifact/restartCommand/text()").evaluate(document, XPathConstants.STRING)
+                + xPath.compile("/artifact/testCommand/text()").evaluate(document, XPathConstants.STRING);
+    }
+
+    @Benchmark
+    public String artifactContextStax() {
+        ArtifactContextUtil context = new ArtifactContextUtil(request, CONTEXT);
+        return context.getBaseLocation() + context.getCheckConfig() + context.getRestartCommand() + context.getTestCommand();
+    }
+
+    @Benchmark
+    public String metadataDom() throws Exception {
+        XPath xPath = XPathFactory.newInstance().newXPath();
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(METADATA));
+        return xPath.compile("/metadata/versioning/snapshot/timestamp/text()").evaluate(document, XPathConstants.STRING)
+                + "-" + xPath.compile("/metadata/versioning/snapshot/buildNumber/text()").evaluate(document, XPathConstants.STRING);
+    }
+
+    @Benchmark
+    public String metadataStax() throws IOException {
+        return MavenMetadataParser.parseSnapshotBuild(new ByteArrayInputStream(METADATA));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(XmlParseBenchmark.class.getSimpleName()).build()).run();
+    }
+}